@@ -31,8 +31,12 @@ import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.Enumeration;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
@@ -51,18 +55,22 @@ import org.springframework.transaction.support.AbstractPlatformTransactionManage
 
 import com.datastax.driver.core.Cluster;
 import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.QueryOptions;
 import com.datastax.driver.core.RemoteEndpointAwareJdkSSLOptions;
 import com.datastax.driver.core.RemoteEndpointAwareNettySSLOptions;
 import com.datastax.driver.core.SSLOptions;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.SocketOptions;
+import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.policies.AddressTranslator;
 import com.datastax.driver.core.policies.ConstantReconnectionPolicy;
 import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
 import com.datastax.driver.core.policies.LatencyAwarePolicy;
 import com.datastax.driver.core.policies.LoadBalancingPolicy;
 import com.datastax.driver.core.policies.TokenAwarePolicy;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import io.gravitee.repository.Scope;
 import io.gravitee.repository.elassandra.management.transaction.NoTransactionManager;
@@ -141,6 +149,16 @@ public abstract class AbstractElassandraRepositoryConfiguration {
         String username;
         String password;
         String indexPrefix;
+        boolean readBackOnWrite;
+        boolean partialUpdate;
+        int bulkConcurrency;
+        int bulkBatchSize;
+        int multiGetConcurrency;
+        int streamFetchSize;
+        int scanConcurrency;
+        int scanMaxRanges;
+        int scrollSlices;
+        boolean coalesceReads;
 
         public String getContactPoint() {
             return contactPoint;
@@ -160,8 +178,41 @@ public abstract class AbstractElassandraRepositoryConfiguration {
         public String getIndexPrefix() {
             return indexPrefix;
         }
+        public boolean isReadBackOnWrite() {
+            return readBackOnWrite;
+        }
+        public boolean isPartialUpdate() {
+            return partialUpdate;
+        }
+        public int getBulkConcurrency() {
+            return bulkConcurrency;
+        }
+        public int getBulkBatchSize() {
+            return bulkBatchSize;
+        }
+        public int getMultiGetConcurrency() {
+            return multiGetConcurrency;
+        }
+        public int getStreamFetchSize() {
+            return streamFetchSize;
+        }
+        public int getScanConcurrency() {
+            return scanConcurrency;
+        }
+        public int getScanMaxRanges() {
+            return scanMaxRanges;
+        }
+        public int getScrollSlices() {
+            return scrollSlices;
+        }
+        public boolean isCoalesceReads() {
+            return coalesceReads;
+        }
         public String toString() {
-            return "contactPoint="+contactPoint+", port="+port+", endpoint="+endpoint+", username="+username+", indexPrefix="+indexPrefix;
+            return "contactPoint="+contactPoint+", port="+port+", endpoint="+endpoint+", username="+username+", indexPrefix="+indexPrefix+", readBackOnWrite="+readBackOnWrite+", partialUpdate="+partialUpdate+
+                    ", bulkConcurrency="+bulkConcurrency+", bulkBatchSize="+bulkBatchSize+
+                    ", multiGetConcurrency="+multiGetConcurrency+", streamFetchSize="+streamFetchSize+
+                    ", scanConcurrency="+scanConcurrency+", scanMaxRanges="+scanMaxRanges+", scrollSlices="+scrollSlices+", coalesceReads="+coalesceReads;
         }
     }
 
@@ -174,9 +225,175 @@ public abstract class AbstractElassandraRepositoryConfiguration {
         config.username = environment.getProperty(scope + ".elassandra.username", "cassandra");
         config.password = environment.getProperty(scope + ".elassandra.password", "cassandra");
         config.indexPrefix = environment.getProperty(scope + ".elassandra.index.prefix", "");
+        config.readBackOnWrite = environment.getProperty(scope + ".elassandra.readBackOnWrite", Boolean.class, true);
+        config.partialUpdate = environment.getProperty(scope + ".elassandra.partialUpdate", Boolean.class, false);
+        config.bulkConcurrency = environment.getProperty(scope + ".elassandra.bulk.concurrency", Integer.class, 32);
+        config.bulkBatchSize = environment.getProperty(scope + ".elassandra.bulk.batchSize", Integer.class, 20);
+        config.multiGetConcurrency = environment.getProperty(scope + ".elassandra.multiGet.concurrency", Integer.class, 512);
+        config.streamFetchSize = environment.getProperty(scope + ".elassandra.stream.fetchSize", Integer.class, 500);
+        config.scanConcurrency = environment.getProperty(scope + ".elassandra.scan.concurrency", Integer.class, 16);
+        config.scanMaxRanges = environment.getProperty(scope + ".elassandra.scan.maxRanges", Integer.class, 16);
+        config.scrollSlices = environment.getProperty(scope + ".elassandra.scroll.slices", Integer.class, 1);
+        config.coalesceReads = environment.getProperty(scope + ".elassandra.coalesceReads", Boolean.class, false);
         return config;
     }
 
+    /**
+     * Statement settings of a named execution profile, unset settings keep the scope defaults.
+     */
+    public static class ExecutionProfile {
+        String name;
+        ConsistencyLevel consistencyLevel;
+        ConsistencyLevel serialConsistencyLevel;
+        int fetchSize;
+        int readTimeoutMillis;
+
+        public String getName() {
+            return name;
+        }
+        public ConsistencyLevel getConsistencyLevel() {
+            return consistencyLevel;
+        }
+        public ConsistencyLevel getSerialConsistencyLevel() {
+            return serialConsistencyLevel;
+        }
+        public int getFetchSize() {
+            return fetchSize;
+        }
+        public int getReadTimeoutMillis() {
+            return readTimeoutMillis;
+        }
+
+        /**
+         * Consistency levels are inherited by the statements bound from the prepared statement.
+         */
+        public PreparedStatement apply(PreparedStatement statement) {
+            if (consistencyLevel != null)
+                statement.setConsistencyLevel(consistencyLevel);
+            if (serialConsistencyLevel != null)
+                statement.setSerialConsistencyLevel(serialConsistencyLevel);
+            return statement;
+        }
+
+        /**
+         * Fetch size and timeout are not inherited from the prepared statement and must be set on each statement.
+         */
+        public <S extends Statement> S apply(S statement) {
+            if (fetchSize > 0)
+                statement.setFetchSize(fetchSize);
+            if (readTimeoutMillis > 0)
+                statement.setReadTimeoutMillis(readTimeoutMillis);
+            return statement;
+        }
+        public String toString() {
+            return "name="+name+", consistencyLevel="+consistencyLevel+", serialConsistencyLevel="+serialConsistencyLevel+
+                    ", fetchSize="+fetchSize+", readTimeoutMillis="+readTimeoutMillis;
+        }
+    }
+
+    /**
+     * Resolve the execution profile of an operation on a table from *scope*.elassandra.operations.*table*.*operation*,
+     * then *scope*.elassandra.operations.*operation*. Profiles are defined by *scope*.elassandra.profiles.*name*.*setting*.
+     */
+    public static class ExecutionProfiles {
+        public enum Operation {
+            READ, WRITE, DELETE, SEARCH
+        }
+
+        private final Environment environment;
+        private final String scope;
+        private final Map<String, ExecutionProfile> profiles = new ConcurrentHashMap<>();
+
+        ExecutionProfiles(Environment environment, String scope) {
+            this.environment = environment;
+            this.scope = scope;
+        }
+
+        /**
+         * @return execution profiles of a table by operation, operations without profile are missing.
+         */
+        public Map<Operation, ExecutionProfile> get(String tableName) {
+            Map<Operation, ExecutionProfile> tableProfiles = new EnumMap<>(Operation.class);
+            for(Operation operation : Operation.values()) {
+                String op = operation.name().toLowerCase(Locale.ROOT);
+                String name = environment.getProperty(scope + ".elassandra.operations." + tableName + "." + op,
+                        environment.getProperty(scope + ".elassandra.operations." + op));
+                if (name != null)
+                    tableProfiles.put(operation, profiles.computeIfAbsent(name, this::load));
+            }
+            return tableProfiles;
+        }
+
+        private ExecutionProfile load(String name) {
+            String prefix = scope + ".elassandra.profiles." + name;
+            ExecutionProfile profile = new ExecutionProfile();
+            profile.name = name;
+            String consistencyLevel = environment.getProperty(prefix + ".consistencyLevel");
+            if (consistencyLevel != null)
+                profile.consistencyLevel = ConsistencyLevel.valueOf(consistencyLevel.toUpperCase(Locale.ROOT));
+            String serialConsistencyLevel = environment.getProperty(prefix + ".serialConsistencyLevel");
+            if (serialConsistencyLevel != null)
+                profile.serialConsistencyLevel = ConsistencyLevel.valueOf(serialConsistencyLevel.toUpperCase(Locale.ROOT));
+            profile.fetchSize = environment.getProperty(prefix + ".fetchSize", Integer.class, 0);
+            profile.readTimeoutMillis = environment.getProperty(prefix + ".readTimeoutMillis", Integer.class, 0);
+            return profile;
+        }
+    }
+
+    @Bean
+    public ExecutionProfiles executionProfiles() {
+        return new ExecutionProfiles(environment, scope);
+    }
+
+    /**
+     * Build the read-through entity cache of a table from *scope*.elassandra.cache.*table*.maximumSize and
+     * expireAfterWriteMillis, defaulting to *scope*.elassandra.cache.maximumSize and expireAfterWriteMillis.
+     * Search result caches are built the same way from *scope*.elassandra.searchCache.
+     */
+    public static class EntityCaches {
+        private final Environment environment;
+        private final String scope;
+
+        EntityCaches(Environment environment, String scope) {
+            this.environment = environment;
+            this.scope = scope;
+        }
+
+        /**
+         * @return the cache of the table, or null when its maximumSize is 0 (the default).
+         */
+        public <V> Cache<Object, V> get(String tableName) {
+            return build("cache", tableName, 60000L);
+        }
+
+        /**
+         * @return the search result cache of the table, or null when its maximumSize is 0 (the default).
+         */
+        public <V> Cache<Object, V> getSearchCache(String tableName) {
+            return build("searchCache", tableName, 10000L);
+        }
+
+        private <V> Cache<Object, V> build(String name, String tableName, long defaultExpireAfterWriteMillis) {
+            String prefix = scope + ".elassandra." + name + ".";
+            long maximumSize = environment.getProperty(prefix + tableName + ".maximumSize", Long.class,
+                    environment.getProperty(prefix + "maximumSize", Long.class, 0L));
+            long expireAfterWriteMillis = environment.getProperty(prefix + tableName + ".expireAfterWriteMillis", Long.class,
+                    environment.getProperty(prefix + "expireAfterWriteMillis", Long.class, defaultExpireAfterWriteMillis));
+            if (maximumSize <= 0)
+                return null;
+            return CacheBuilder.newBuilder()
+                    .maximumSize(maximumSize)
+                    .expireAfterWrite(expireAfterWriteMillis, TimeUnit.MILLISECONDS)
+                    .recordStats()
+                    .build();
+        }
+    }
+
+    @Bean
+    public EntityCaches entityCaches() {
+        return new EntityCaches(environment, scope);
+    }
+
     public static class Ssl {
         SSLContext sslContext;
         SSLOptions sslOption;
@@ -0,0 +1,88 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Run asynchronous operations over a list with a bounded number of operations in flight, an operation is
+ * started each time another one completes. Failures are reported per element and do not stop the others.
+ *
+ * @author vroyer
+ */
+public final class ConcurrencyWindow {
+
+    private ConcurrencyWindow() {
+    }
+
+    /**
+     * @return futures of the operations in the order of the inputs.
+     */
+    public static <I, O> List<CompletableFuture<O>> submit(List<I> inputs, int window, Function<? super I, CompletableFuture<O>> operation) {
+        final List<CompletableFuture<O>> results = new ArrayList<>(inputs.size());
+        for(int i = 0; i < inputs.size(); i++)
+            results.add(new CompletableFuture<>());
+        final AtomicInteger next = new AtomicInteger();
+        for(int lane = 0; lane < Math.min(Math.max(1, window), inputs.size()); lane++)
+            launch(inputs, operation, results, next);
+        return results;
+    }
+
+    /**
+     * @return a future completed when all the futures are, whatever their outcome.
+     */
+    public static CompletableFuture<Void> allDone(List<? extends CompletableFuture<?>> futures) {
+        return CompletableFuture.allOf(futures.stream()
+                .map(f -> f.handle((r, t) -> null))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    private static <I, O> void launch(List<I> inputs, Function<? super I, CompletableFuture<O>> operation, List<CompletableFuture<O>> results, AtomicInteger next) {
+        // loop over operations completing synchronously rather than recursing.
+        while (true) {
+            final int i = next.getAndIncrement();
+            if (i >= inputs.size())
+                return;
+            CompletableFuture<O> future;
+            try {
+                future = operation.apply(inputs.get(i));
+            } catch (Throwable t) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(t);
+            }
+            if (!future.isDone()) {
+                future.whenComplete((o, t) -> {
+                    complete(results.get(i), o, t);
+                    launch(inputs, operation, results, next);
+                });
+                return;
+            }
+            future.whenComplete((o, t) -> complete(results.get(i), o, t));
+        }
+    }
+
+    private static <O> void complete(CompletableFuture<O> result, O o, Throwable t) {
+        if (t == null)
+            result.complete(o);
+        else
+            result.completeExceptionally(t);
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.common;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import io.reactivex.Single;
+
+/**
+ * Adapters from the driver {@link ListenableFuture} to reactive or JDK types, without blocking any thread.
+ * Callbacks run on the thread completing the future (usually a driver I/O thread), so they must not block.
+ *
+ * @author vroyer
+ */
+public final class ListenableFutures {
+
+    private ListenableFutures() {
+    }
+
+    /**
+     * @return a Single emitting the future result, the future is cancelled if the subscriber disposes.
+     */
+    public static <T> Single<T> toSingle(ListenableFuture<T> future) {
+        return Single.create(emitter -> {
+            Futures.addCallback(future, new FutureCallback<T>() {
+                @Override
+                public void onSuccess(T result) {
+                    emitter.onSuccess(result);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    emitter.onError(t);
+                }
+            }, MoreExecutors.directExecutor());
+            emitter.setCancellable(() -> future.cancel(false));
+        });
+    }
+
+    /**
+     * @return a CompletableFuture completed with the future result, cancelling it cancels the future.
+     */
+    public static <T> CompletableFuture<T> toCompletableFuture(ListenableFuture<T> future) {
+        final CompletableFuture<T> completable = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                future.cancel(mayInterruptIfRunning);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        Futures.addCallback(future, new FutureCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                completable.complete(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                completable.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+        return completable;
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.common;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Coalesce concurrent identical reads: while a read of a key is in flight, other reads of the same key share its
+ * result instead of issuing their own request. Forgetting a key (on write) makes the next reads start a new request,
+ * so that a reader never gets a result older than its own writes.
+ *
+ * @author vroyer
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inflight = new ConcurrentHashMap<>();
+
+    /**
+     * @return the result of the in-flight asynchronous read of the key, or of a new one.
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> read) {
+        final CompletableFuture<V> promise = new CompletableFuture<>();
+        final CompletableFuture<V> current = inflight.putIfAbsent(key, promise);
+        if (current != null)
+            return current.thenApply(Function.identity());
+        try {
+            read.get().whenComplete((v, t) -> {
+                inflight.remove(key, promise);
+                if (t == null)
+                    promise.complete(v);
+                else
+                    promise.completeExceptionally(t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+            });
+        } catch (Throwable t) {
+            inflight.remove(key, promise);
+            promise.completeExceptionally(t);
+        }
+        // callers cannot complete nor cancel the shared future
+        return promise.thenApply(Function.identity());
+    }
+
+    /**
+     * @return the result of the in-flight read of the key, or of a new one run by the calling thread.
+     */
+    public V get(K key, Supplier<V> read) {
+        final CompletableFuture<V> promise = new CompletableFuture<>();
+        final CompletableFuture<V> current = inflight.putIfAbsent(key, promise);
+        if (current != null) {
+            try {
+                return current.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw e;
+            }
+        }
+        try {
+            V v = read.get();
+            promise.complete(v);
+            return v;
+        } catch (Throwable t) {
+            promise.completeExceptionally(t);
+            throw t;
+        } finally {
+            inflight.remove(key, promise);
+        }
+    }
+
+    public void forget(K key) {
+        inflight.remove(key);
+    }
+
+    public void forgetIf(Predicate<? super K> predicate) {
+        inflight.keySet().removeIf(predicate);
+    }
+
+    public void forgetAll() {
+        inflight.clear();
+    }
+
+    /**
+     * @return the number of reads in flight.
+     */
+    public int size() {
+        return inflight.size();
+    }
+}
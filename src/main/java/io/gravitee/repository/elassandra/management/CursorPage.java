@@ -0,0 +1,43 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.management;
+
+import io.gravitee.common.data.domain.Page;
+
+/**
+ * A page of search results, with the opaque cursor to read the next page, null after the last page.
+ *
+ * @author vroyer
+ */
+public class CursorPage<T> {
+
+    private final Page<T> page;
+    private final String cursor;
+
+    public CursorPage(Page<T> page, String cursor) {
+        this.page = page;
+        this.cursor = cursor;
+    }
+
+    public Page<T> getPage() {
+        return page;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+}
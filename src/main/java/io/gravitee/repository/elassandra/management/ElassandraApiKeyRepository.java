@@ -34,7 +34,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
 
-import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
 
 import io.gravitee.repository.exceptions.TechnicalException;
@@ -124,8 +123,7 @@ public class ElassandraApiKeyRepository extends ElassandraCrud<ApiKey, String> i
         String esQuery = new SearchSourceBuilder()
                 .query(queryBuilder.hasClauses() ? queryBuilder : QueryBuilders.matchAllQuery())
                 .toString(ToXContent.EMPTY_PARAMS);
-        final ResultSet resultSet = session.execute(this.esQueryStmt.bind(esQuery));
-        return resultSet.all().stream().map(this::fromRow).collect(Collectors.toSet());
+        return searchStream(esQuery).collect(Collectors.toSet());
     }
 
     @Override
@@ -139,8 +137,7 @@ public class ElassandraApiKeyRepository extends ElassandraCrud<ApiKey, String> i
         String esQuery = new SearchSourceBuilder()
                 .query(queryBuilder.hasClauses() ? queryBuilder : QueryBuilders.matchAllQuery())
                 .toString(ToXContent.EMPTY_PARAMS);
-        final ResultSet resultSet = session.execute(this.esQueryStmt.bind(esQuery));
-        return resultSet.all().stream().map(this::fromRow).collect(Collectors.toSet());
+        return searchStream(esQuery).collect(Collectors.toSet());
     }
 
     @Override
@@ -160,12 +157,10 @@ public class ElassandraApiKeyRepository extends ElassandraCrud<ApiKey, String> i
                 queryBuilder.filter(rangeQuery);
             }
         }
-        String esQuery = new SearchSourceBuilder()
+        SearchSourceBuilder esQueryBuilder = new SearchSourceBuilder()
                 .query(queryBuilder.hasClauses() ? queryBuilder : QueryBuilders.matchAllQuery())
-                .sort("updated_at", SortOrder.DESC)
-                .toString(ToXContent.EMPTY_PARAMS);
-        final ResultSet resultSet = session.execute(this.esQueryStmt.bind(esQuery));
-        return resultSet.all().stream().map(this::fromRow).collect(Collectors.toList());
+                .sort("updated_at", SortOrder.DESC);
+        return scroll(esQueryBuilder).collect(Collectors.toList());
     }
 
 }
@@ -20,8 +20,9 @@ import static org.springframework.util.CollectionUtils.isEmpty;
 import static org.springframework.util.StringUtils.isEmpty;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Locale;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.elasticsearch.common.settings.Settings;
@@ -33,14 +34,11 @@ import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.sort.SortOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.cassandra.core.cql.support.CachedPreparedStatementCreator;
-import org.springframework.data.cassandra.core.cql.support.PreparedStatementCache;
 import org.springframework.stereotype.Repository;
 
-import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
-import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 import io.gravitee.common.data.domain.Page;
 import io.gravitee.repository.management.api.ApiRepository;
@@ -60,8 +58,6 @@ public class ElassandraApiRepository extends ElassandraCrud<Api, String> impleme
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ElassandraApiRepository.class);
 
-    private final PreparedStatementCache cache = PreparedStatementCache.create();
-
     public ElassandraApiRepository() throws IOException {
         super("apis",
                 new String[] { "id", "name", "description", "version", "definition", "deployed_at", "created_at", "updated_at", "visibility", "lifecycle_state", "api_lifecycle_state", "picture", "groups", "views", "labels" },
@@ -157,7 +153,7 @@ public class ElassandraApiRepository extends ElassandraCrud<Api, String> impleme
 
     private List<Api> findByCriteria(ApiCriteria apiCriteria, ApiFieldExclusionFilter apiFieldExclusionFilter) {
         LOGGER.debug("search({})", apiCriteria);
-        List<String> projection = Lists.newArrayList("id", "name", "description", "version", "deployed_at", "created_at", "updated_at", "visibility", "lifecycle_state", "api_lifecycle_state", "views");
+        Set<String> projection = Sets.newLinkedHashSet(Arrays.asList("id", "name", "description", "version", "deployed_at", "created_at", "updated_at", "visibility", "lifecycle_state", "api_lifecycle_state", "views"));
         if (apiFieldExclusionFilter == null || !apiFieldExclusionFilter.isDefinition()) {
             projection.add("definition");
         }
@@ -202,10 +198,7 @@ public class ElassandraApiRepository extends ElassandraCrud<Api, String> impleme
                 .toString(ToXContent.EMPTY_PARAMS);
         LOGGER.debug("query={}", esQuery);
 
-        PreparedStatement stmt = CachedPreparedStatementCreator.of(cache,
-                String.format(Locale.ROOT,"SELECT %s FROM %s WHERE es_query = ? AND es_options='indices=%s' LIMIT ? ALLOW FILTERING", String.join(",", projection), tableName, indexName))
-                .createPreparedStatement(session);
-        final ResultSet resultSet = session.execute(stmt.bind(esQuery, 1000));
+        final ResultSet resultSet = session.execute(esQueryStmt(projection, true).bind(esQuery, 1000));
         return resultSet.all().stream().map(this::fromRow).collect(Collectors.toList());
     }
 }
@@ -16,9 +16,8 @@
  */
 package io.gravitee.repository.elassandra.management;
 
-import static com.datastax.driver.core.querybuilder.QueryBuilder.in;
-
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -92,12 +91,7 @@ public class ElassandraApplicationRepository extends ElassandraCrud<Application,
     public Set<Application> findAll(ApplicationStatus... statuses) throws TechnicalException {
         LOGGER.debug("Find all Applications");
 
-        final Statement select = QueryBuilder.select().all().from(tableName);
-        final ResultSet resultSet = session.execute(select);
-
-        Set<Application> applications = resultSet.all().stream().
-                map(this::fromRow).
-                collect(Collectors.toSet());
+        Set<Application> applications = new HashSet<>(join(scanAsync()));
         if (statuses != null && statuses.length > 0) {
             List<ApplicationStatus> applicationStatuses = Arrays.asList(statuses);
             applications = applications.stream().
@@ -113,11 +107,7 @@ public class ElassandraApplicationRepository extends ElassandraCrud<Application,
     public Set<Application> findByIds(List<String> ids) throws TechnicalException {
         LOGGER.debug("Find Applications by ID list");
 
-        // may be wrong : should loop through list and add resultsets to a list of resultset
-        final Statement select = QueryBuilder.select().all().from(tableName).where(in("id", ids));
-        final ResultSet resultSet = session.execute(select);
-
-        final Set<Application> applications = resultSet.all().stream().map(this::fromRow).collect(Collectors.toSet());
+        final Set<Application> applications = new HashSet<>(findAll(ids));
 
         LOGGER.debug("Found {} applications", applications.size());
         return applications;
@@ -127,13 +117,7 @@ public class ElassandraApplicationRepository extends ElassandraCrud<Application,
     public Set<Application> findByGroups(List<String> groups, ApplicationStatus ... statuses) throws TechnicalException {
         LOGGER.debug("Find Applications by Group list");
 
-        // may be wrong : should loop through list and add resultsets to a list of resultset
-        final Statement select = QueryBuilder.select().all().from(tableName);
-
-        final ResultSet resultSet = session.execute(select);
-
-        Set<Application> applications = resultSet.all().stream().
-                map(this::fromRow).
+        Set<Application> applications = join(scanAsync()).stream().
                 filter(application -> application.getGroups().stream().map(group-> groups.contains(group)).reduce(Boolean::logicalOr).orElse(false)).
                 collect(Collectors.toSet());
 
@@ -28,6 +28,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 import org.apache.lucene.search.join.ScoreMode;
@@ -38,6 +39,8 @@ import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.sort.SortOrder;
 import org.slf4j.Logger;
@@ -148,9 +151,29 @@ public class ElassandraAuditRepository extends ElassandraCrud<Audit, String> imp
         return null;
     }
 
-    @Override
-    public Page<Audit> search(AuditCriteria criteria, Pageable pageable) {
-        LOGGER.debug("Search User by criteria [{}]", criteria);
+    /**
+     * Cursor paging of the audits, see {@link ElassandraCrud#searchAfter(SearchSourceBuilder, int, String)}.
+     */
+    public CursorPage<Audit> search(AuditCriteria criteria, int pageSize, String cursor) throws TechnicalException {
+        LOGGER.debug("Search Audit by criteria [{}] cursor={}", criteria, cursor);
+        return searchAfter(searchSource(criteria), pageSize, cursor);
+    }
+
+    /**
+     * @return the number of audit events matching the criteria by day, keyed and sorted by the epoch millis of the day.
+     */
+    public Map<Long, Long> countByDay(AuditCriteria criteria) throws TechnicalException {
+        LOGGER.debug("Count Audit by day criteria [{}]", criteria);
+        SearchSourceBuilder esQueryBuilder = searchSource(criteria)
+                .size(0)
+                .aggregation(AggregationBuilders.dateHistogram("day").field("created_at").dateHistogramInterval(DateHistogramInterval.DAY));
+        final Map<Long, Long> counts = new TreeMap<>();
+        for(Map<String, Object> row : aggregations(esQueryBuilder))
+            counts.put(((Number) bucketKey(row, "day")).longValue(), bucketCount(row, "day"));
+        return counts;
+    }
+
+    private SearchSourceBuilder searchSource(final AuditCriteria criteria) {
         BoolQueryBuilder queryBuilder = new BoolQueryBuilder();
         if (criteria != null) {
             if (criteria.getFrom() > 0 || criteria.getTo() > 0) {
@@ -189,6 +212,13 @@ public class ElassandraAuditRepository extends ElassandraCrud<Audit, String> imp
         SearchSourceBuilder esQueryBuilder = new SearchSourceBuilder()
                 .query(queryBuilder.hasClauses() ? queryBuilder : QueryBuilders.matchAllQuery())
                 .sort("created_at", SortOrder.DESC);
+        return esQueryBuilder;
+    }
+
+    @Override
+    public Page<Audit> search(AuditCriteria criteria, Pageable pageable) {
+        LOGGER.debug("Search User by criteria [{}]", criteria);
+        SearchSourceBuilder esQueryBuilder = searchSource(criteria);
 
         int pageSize = 1000;
         if (pageable != null) {
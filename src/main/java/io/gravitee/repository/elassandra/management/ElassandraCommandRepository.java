@@ -23,7 +23,6 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 import org.elasticsearch.common.settings.Settings;
-import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
@@ -34,7 +33,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
 
-import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
 
 import io.gravitee.repository.exceptions.TechnicalException;
@@ -137,13 +135,10 @@ public class ElassandraCommandRepository extends ElassandraCrud<Command, String>
             if (criteria.getNotFrom() != null)
                 queryBuilder.mustNot(QueryBuilders.termQuery("xfrom", criteria.getNotFrom()));
         }
-        String esQuery = new SearchSourceBuilder()
-                .query(queryBuilder.hasClauses() ? queryBuilder : QueryBuilders.matchAllQuery())
-                .toString(ToXContent.EMPTY_PARAMS);
-        LOGGER.debug("es_query={}", esQuery);
-
-        final ResultSet resultSet = session.execute(this.esQueryStmt.bind(esQuery));
-        return resultSet.all().stream().map(this::fromRow).collect(Collectors.toList());
+        SearchSourceBuilder esQueryBuilder = new SearchSourceBuilder()
+                .query(queryBuilder.hasClauses() ? queryBuilder : QueryBuilders.matchAllQuery());
+        LOGGER.debug("es_query={}", esQueryBuilder);
+        return scroll(esQueryBuilder).collect(Collectors.toList());
     }
 
 }
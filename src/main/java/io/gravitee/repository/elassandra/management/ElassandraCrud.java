@@ -19,14 +19,41 @@ package io.gravitee.repository.elassandra.management;
 import java.io.IOException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.annotation.PostConstruct;
 import javax.net.ssl.HostnameVerifier;
@@ -38,6 +65,7 @@ import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.elassandra.index.ElasticIncomingPayload;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRequest;
@@ -46,19 +74,56 @@ import org.elasticsearch.client.RestClientBuilder;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.client.indices.CreateIndexResponse;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.NamedWriteableAwareStreamInput;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.SearchModule;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.slice.SliceBuilder;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
 
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Metadata;
 import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.QueryOptions;
+import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.Token;
+import com.datastax.driver.core.TokenRange;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheStats;
 
+import io.gravitee.common.data.domain.Page;
 import io.gravitee.repository.elassandra.common.AbstractElassandraRepositoryConfiguration;
+import io.gravitee.repository.elassandra.common.AbstractElassandraRepositoryConfiguration.ExecutionProfile;
+import io.gravitee.repository.elassandra.common.AbstractElassandraRepositoryConfiguration.ExecutionProfiles.Operation;
+import io.gravitee.repository.elassandra.common.ConcurrencyWindow;
+import io.gravitee.repository.elassandra.common.ListenableFutures;
+import io.gravitee.repository.elassandra.common.SingleFlight;
 import io.gravitee.repository.exceptions.TechnicalException;
 
 /**
@@ -71,6 +136,15 @@ import io.gravitee.repository.exceptions.TechnicalException;
 public abstract class ElassandraCrud<T, K> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ElassandraCrud.class);
+    private static final ObjectMapper CURSOR_MAPPER = new ObjectMapper();
+    private static final Set<DataType.Name> NUMERIC_TYPES = EnumSet.of(DataType.Name.TIMESTAMP, DataType.Name.BIGINT,
+            DataType.Name.INT, DataType.Name.SMALLINT, DataType.Name.TINYINT, DataType.Name.DOUBLE, DataType.Name.FLOAT);
+    private static final Set<DataType.Name> FLOATING_TYPES = EnumSet.of(DataType.Name.DOUBLE, DataType.Name.FLOAT);
+
+    /**
+     * Maximum number of buckets of a terms aggregation.
+     */
+    protected static final int AGGREGATION_BUCKETS = 1000;
 
     @Autowired
     protected Session session;
@@ -84,6 +158,22 @@ public abstract class ElassandraCrud<T, K> {
     @Autowired
     protected AbstractElassandraRepositoryConfiguration.Config config;
 
+    @Autowired(required = false)
+    protected AbstractElassandraRepositoryConfiguration.ExecutionProfiles executionProfiles;
+
+    @Autowired(required = false)
+    protected AbstractElassandraRepositoryConfiguration.EntityCaches entityCaches;
+
+    /**
+     * Execution profiles of this table by operation
+     */
+    protected Map<Operation, ExecutionProfile> profiles = new EnumMap<>(Operation.class);
+
+    /**
+     * Execution profiles by operation of the other tables managed by this repository
+     */
+    protected Map<String, Map<Operation, ExecutionProfile>> otherProfiles = new ConcurrentHashMap<>();
+
     /**
      * Cassandra table name
      */
@@ -131,12 +221,51 @@ public abstract class ElassandraCrud<T, K> {
     public final Settings.Builder setting;
 
     protected PreparedStatement insertStmt;
+    protected PreparedStatement updateIfExistsStmt;
+
+    /**
+     * Leave null columns unset on create, requires the native protocol v4 (Cassandra 2.2+).
+     */
+    protected boolean unsetNulls;
+
+    /**
+     * UPDATE statements of partial updates by set of changed columns
+     */
+    protected final Map<BitSet, CompletableFuture<PreparedStatement>> partialUpdateStmts = new ConcurrentHashMap<>();
     protected PreparedStatement deleteStmt;
     protected PreparedStatement deletePartitionStmt;
     protected PreparedStatement selectStmt;
     protected PreparedStatement selectAllStmt;
+    protected PreparedStatement scanRangeStmt;
+    protected PreparedStatement scanTailStmt;
     protected PreparedStatement esQueryStmt;
     protected PreparedStatement esQueryStmtWithLimit;
+    protected String esAggregationQuery;
+
+    /**
+     * SELECT statements reading a subset of the columns, prepared once per projection.
+     */
+    protected final Map<String, PreparedStatement> projectionStmts = new ConcurrentHashMap<>();
+
+    /**
+     * Optional read-through cache of the rows by primary key, rows are mapped on each hit so that callers
+     * never share a mutable object.
+     */
+    protected Cache<Object, Row> rowCache;
+
+    /**
+     * Optional cache of the rows matching an Elasticsearch query, invalidated on any write through this repository.
+     */
+    protected Cache<Object, List<Row>> searchCache;
+
+    /**
+     * In-flight reads by primary key and by query, shared by concurrent identical reads. Writes increment the
+     * generations, so that reads started before a write do not populate the caches.
+     */
+    protected final SingleFlight<Object, Row> inflightReads = new SingleFlight<>();
+    protected final SingleFlight<Object, List<Row>> inflightSearches = new SingleFlight<>();
+    protected final AtomicLong rowGeneration = new AtomicLong();
+    protected final AtomicLong searchGeneration = new AtomicLong();
 
     public abstract Object[] values(T t);
     public abstract T fromRow(Row row);
@@ -211,6 +340,20 @@ public abstract class ElassandraCrud<T, K> {
         return sb.toString();
     }
 
+    protected String buildSetClause() {
+        StringBuffer sb = new StringBuffer(cols[pkLength] + " = ?");
+        for(int i= pkLength + 1; i < cols.length; i++)
+            sb.append(", " + cols[i] + " = ?");
+        return sb.toString();
+    }
+
+    protected String buildSetClause(BitSet columns) {
+        StringBuffer sb = new StringBuffer();
+        for(int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1))
+            sb.append(sb.length() == 0 ? "" : ", ").append(cols[i]).append(" = ?");
+        return sb.toString();
+    }
+
     private String buildPartitionWhereClause() {
         StringBuffer sb = new StringBuffer(cols[0] + "= ?");
         for(int i= 1; i < ptLength; i++)
@@ -225,6 +368,23 @@ public abstract class ElassandraCrud<T, K> {
         return sb.toString();
     }
 
+    /**
+     * @return the projection clause of the fields in the column order, always including the primary key columns,
+     * or of all the columns when fields is null.
+     */
+    protected String buildProjectionClause(Set<String> fields) {
+        if (fields == null)
+            return buildProjectionClause();
+        for(String field : fields)
+            if (!Arrays.asList(cols).contains(field))
+                throw new IllegalStateException("Unknown column " + field + " in table=" + tableName);
+        final StringJoiner projection = new StringJoiner(", ");
+        for(int i = 0; i < cols.length; i++)
+            if (i < pkLength || fields.contains(cols[i]))
+                projection.add(cols[i]);
+        return projection.toString();
+    }
+
     protected String buildMarksClause() {
         StringBuffer sb = new StringBuffer("?");
         for(int i= 1; i < cols.length; i++)
@@ -249,6 +409,10 @@ public abstract class ElassandraCrud<T, K> {
         return sb.toString();
     }
 
+    protected String buildPartitionKeyClause() {
+        return String.join(", ", Arrays.copyOf(cols, ptLength));
+    }
+
     protected String buildCluseringOrderClause() {
         if (cqlClusteringDesc.length == 0)
             return "";
@@ -278,18 +442,42 @@ public abstract class ElassandraCrud<T, K> {
             }
         }
 
+        if (executionProfiles != null) {
+            profiles = executionProfiles.get(tableName);
+            if (!profiles.isEmpty())
+                LOGGER.info("table={} execution profiles={}", tableName, profiles);
+        }
+
+        if (entityCaches != null) {
+            rowCache = entityCaches.get(tableName);
+            if (rowCache != null)
+                LOGGER.info("table={} read-through cache enabled", tableName);
+            if (indexName != null) {
+                searchCache = entityCaches.getSearchCache(tableName);
+                if (searchCache != null)
+                    LOGGER.info("table={} search cache enabled", tableName);
+            }
+        }
+
         // init prepared statement
         LOGGER.debug("table={} where={}", tableName, buildWhereClause());
 
-        selectStmt = session.prepare(String.format(Locale.ROOT,"SELECT %s FROM %s WHERE %s", buildProjectionClause(), tableName, buildWhereClause()));
-        selectAllStmt = session.prepare(String.format(Locale.ROOT,"SELECT %s FROM %s", buildProjectionClause(), tableName));
-        deleteStmt = session.prepare(String.format(Locale.ROOT,"DELETE FROM %s WHERE %s", tableName, buildWhereClause()));
+        selectStmt = prepare(Operation.READ, String.format(Locale.ROOT,"SELECT %s FROM %s WHERE %s", buildProjectionClause(), tableName, buildWhereClause()));
+        selectAllStmt = prepare(Operation.READ, String.format(Locale.ROOT,"SELECT %s FROM %s", buildProjectionClause(), tableName));
+        scanRangeStmt = prepare(Operation.READ, String.format(Locale.ROOT,"SELECT %s FROM %s WHERE token(%s) > ? AND token(%s) <= ?",
+                buildProjectionClause(), tableName, buildPartitionKeyClause(), buildPartitionKeyClause()));
+        scanTailStmt = prepare(Operation.READ, String.format(Locale.ROOT,"SELECT %s FROM %s WHERE token(%s) > ?",
+                buildProjectionClause(), tableName, buildPartitionKeyClause()));
+        deleteStmt = prepare(Operation.DELETE, String.format(Locale.ROOT,"DELETE FROM %s WHERE %s", tableName, buildWhereClause()));
         if (ptLength != pkLength) {
-            deletePartitionStmt = session.prepare(String.format(Locale.ROOT,"DELETE FROM %s WHERE %s", tableName, buildPartitionWhereClause()));
+            deletePartitionStmt = prepare(Operation.DELETE, String.format(Locale.ROOT,"DELETE FROM %s WHERE %s", tableName, buildPartitionWhereClause()));
         } else {
             deletePartitionStmt = deleteStmt;
         }
-        insertStmt = session.prepare(String.format(Locale.ROOT,"INSERT INTO %s (%s) VALUES (%s)", tableName, buildProjectionClause(), buildMarksClause()));
+        unsetNulls = supportsUnset(session);
+        insertStmt = prepare(Operation.WRITE, String.format(Locale.ROOT,"INSERT INTO %s (%s) VALUES (%s)", tableName, buildProjectionClause(), buildMarksClause()));
+        if (cols.length > pkLength)
+            updateIfExistsStmt = prepare(Operation.WRITE, String.format(Locale.ROOT,"UPDATE %s SET %s WHERE %s IF EXISTS", tableName, buildSetClause(), buildWhereClause()));
         if (indexName != null) {
             try {
                 session.execute(String.format(Locale.ROOT,"ALTER TABLE %s ADD es_query text;", tableName));
@@ -297,11 +485,194 @@ public abstract class ElassandraCrud<T, K> {
             } catch(Exception e) {
                 //LOGGER.warn("alter table", e);
             }
-            esQueryStmt = session.prepare(String.format(Locale.ROOT,"SELECT %s FROM %s WHERE es_query = ? AND es_options='indices=%s' ALLOW FILTERING", buildProjectionClause(), tableName, indexName));
-            esQueryStmtWithLimit = session.prepare(String.format(Locale.ROOT,"SELECT %s FROM %s WHERE es_query = ? AND es_options='indices=%s' LIMIT ? ALLOW FILTERING", buildProjectionClause(), tableName, indexName));
+            esQueryStmt = prepare(Operation.SEARCH, String.format(Locale.ROOT,"SELECT %s FROM %s WHERE es_query = ? AND es_options='indices=%s' ALLOW FILTERING", buildProjectionClause(), tableName, indexName));
+            esQueryStmtWithLimit = prepare(Operation.SEARCH, String.format(Locale.ROOT,"SELECT %s FROM %s WHERE es_query = ? AND es_options='indices=%s' LIMIT ? ALLOW FILTERING", buildProjectionClause(), tableName, indexName));
+            esAggregationQuery = String.format(Locale.ROOT,"SELECT * FROM %s WHERE es_query = ? AND es_options='indices=%s' ALLOW FILTERING", tableName, indexName);
         }
     }
 
+    /**
+     * @return true when the negotiated native protocol supports unset values, false when it is unknown
+     * (e.g. a session without cluster), so that null columns are written.
+     */
+    protected static boolean supportsUnset(Session session) {
+        Cluster cluster = session.getCluster();
+        if (cluster == null || cluster.getConfiguration() == null)
+            return false;
+        ProtocolVersion protocolVersion = cluster.getConfiguration().getProtocolOptions().getProtocolVersion();
+        return protocolVersion != null && protocolVersion.compareTo(ProtocolVersion.V4) >= 0;
+    }
+
+    /**
+     * Prepare a statement with the consistency levels of the operation execution profile.
+     */
+    protected PreparedStatement prepare(Operation operation, String query) {
+        return prepare(tableName, operation, query);
+    }
+
+    /**
+     * Prepare a statement on a table with the consistency levels of the operation execution profile of this table.
+     */
+    protected PreparedStatement prepare(String table, Operation operation, String query) {
+        PreparedStatement statement = session.prepare(query);
+        ExecutionProfile profile = profiles(table).get(operation);
+        return profile == null ? statement : profile.apply(statement);
+    }
+
+    /**
+     * @return execution profiles by operation of a table, tables other than {@link #tableName} are resolved once.
+     */
+    protected Map<Operation, ExecutionProfile> profiles(String table) {
+        if (executionProfiles == null || table.equals(tableName))
+            return profiles;
+        return otherProfiles.computeIfAbsent(table, t -> {
+            Map<Operation, ExecutionProfile> tableProfiles = executionProfiles.get(t);
+            if (!tableProfiles.isEmpty())
+                LOGGER.info("table={} execution profiles={}", t, tableProfiles);
+            return tableProfiles;
+        });
+    }
+
+    /**
+     * @return all the columns but the excluded ones, to skip large columns in list views. Objects read with such a
+     * projection leave the other columns unset. Projections are protected: fromRow must tolerate the missing
+     * columns, so each repository exposes the projections its fromRow supports.
+     */
+    protected Set<String> columnsExcept(String... excluded) {
+        final Set<String> fields = new LinkedHashSet<>(Arrays.asList(cols));
+        fields.removeAll(Arrays.asList(excluded));
+        return fields;
+    }
+
+    /**
+     * @return the statement selecting a row by primary key, reading the given fields only (all when null).
+     */
+    protected PreparedStatement selectStmt(Set<String> fields) {
+        if (fields == null)
+            return selectStmt;
+        return prepareProjection(Operation.READ, String.format(Locale.ROOT,"SELECT %s FROM %s WHERE %s", buildProjectionClause(fields), tableName, buildWhereClause()));
+    }
+
+    /**
+     * @return the es_query statement, with a LIMIT bind marker if withLimit, reading the given fields only (all when null).
+     */
+    protected PreparedStatement esQueryStmt(Set<String> fields, boolean withLimit) {
+        if (fields == null)
+            return withLimit ? esQueryStmtWithLimit : esQueryStmt;
+        return prepareProjection(Operation.SEARCH, String.format(Locale.ROOT,"SELECT %s FROM %s WHERE es_query = ? AND es_options='indices=%s'%s ALLOW FILTERING",
+                buildProjectionClause(fields), tableName, indexName, withLimit ? " LIMIT ?" : ""));
+    }
+
+    private PreparedStatement prepareProjection(Operation operation, String query) {
+        PreparedStatement statement = projectionStmts.get(query);
+        if (statement == null) {
+            // prepare outside of the map, a blocking round trip must not lock other projections.
+            statement = prepare(operation, query);
+            PreparedStatement prepared = projectionStmts.putIfAbsent(query, statement);
+            if (prepared != null)
+                statement = prepared;
+        }
+        return statement;
+    }
+
+    /**
+     * When false, create returns the written object without reading it back, and update is a single
+     * UPDATE ... IF EXISTS lightweight transaction instead of a read followed by a create.
+     */
+    protected boolean readBackOnWrite() {
+        return config == null || config.isReadBackOnWrite() || updateIfExistsStmt == null;
+    }
+
+    protected boolean partialUpdate() {
+        return config != null && config.isPartialUpdate();
+    }
+
+    /**
+     * @return regular columns of the new values differing from the current ones.
+     */
+    protected BitSet changedColumns(Object[] current, Object[] values) {
+        BitSet changed = new BitSet(cols.length);
+        for(int i = pkLength; i < cols.length; i++)
+            if (!Objects.deepEquals(current[i], values[i]))
+                changed.set(i);
+        return changed;
+    }
+
+    /**
+     * Prepare once, and asynchronously, the UPDATE statement of a set of changed columns.
+     */
+    protected CompletableFuture<PreparedStatement> partialUpdateStmt(BitSet columns) {
+        final CompletableFuture<PreparedStatement> future = partialUpdateStmts.computeIfAbsent(columns, c -> {
+            String query = String.format(Locale.ROOT, "UPDATE %s SET %s WHERE %s", tableName, buildSetClause(c), buildWhereClause());
+            return ListenableFutures.toCompletableFuture(session.prepareAsync(query)).thenApply(statement -> {
+                ExecutionProfile profile = profiles.get(Operation.WRITE);
+                return profile == null ? statement : profile.apply(statement);
+            });
+        });
+        // retry a failed preparation on the next update.
+        future.whenComplete((statement, t) -> {
+            if (t != null)
+                partialUpdateStmts.remove(columns, future);
+        });
+        return future;
+    }
+
+    /**
+     * Write only the changed regular columns, nothing if no column changed.
+     */
+    protected CompletableFuture<T> partialUpdateAsync(Object[] current, T t) {
+        final Object[] values = values(t);
+        final BitSet changed = changedColumns(current, values);
+        if (changed.isEmpty())
+            return CompletableFuture.completedFuture(t);
+        final Object[] bindValues = new Object[changed.cardinality() + pkLength];
+        int j = 0;
+        for(int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1))
+            bindValues[j++] = values[i];
+        System.arraycopy(values, 0, bindValues, j, pkLength);
+        LOGGER.debug("table={} partial update of columns={}", tableName, changed);
+        return partialUpdateStmt(changed)
+                .thenCompose(statement -> executeAsync(profiled(Operation.WRITE, statement.bind(bindValues))))
+                .thenApply(rs -> t);
+    }
+
+    /**
+     * Bind the insert statement, leaving null values unset so that no tombstone is written for absent fields.
+     */
+    protected BoundStatement bindInsert(Object[] values, boolean unsetNulls) {
+        BoundStatement statement = insertStmt.bind(values);
+        if (unsetNulls)
+            for(int i = pkLength; i < values.length; i++)
+                if (values[i] == null)
+                    statement.unset(i);
+        return statement;
+    }
+
+    /**
+     * @return bind values of {@link #updateIfExistsStmt}, regular columns followed by primary key columns.
+     */
+    protected Object[] updateValues(Object[] values) {
+        Object[] updateValues = new Object[values.length];
+        System.arraycopy(values, pkLength, updateValues, 0, values.length - pkLength);
+        System.arraycopy(values, 0, updateValues, values.length - pkLength, pkLength);
+        return updateValues;
+    }
+
+    /**
+     * Apply the fetch size and timeout of the operation execution profile to a bound statement.
+     */
+    protected <S extends Statement> S profiled(Operation operation, S statement) {
+        return profiled(tableName, operation, statement);
+    }
+
+    /**
+     * Apply the fetch size and timeout of the operation execution profile of a table to a bound statement.
+     */
+    protected <S extends Statement> S profiled(String table, Operation operation, S statement) {
+        ExecutionProfile profile = profiles(table).get(operation);
+        return profile == null ? statement : profile.apply(statement);
+    }
+
     public void initMapping() throws IOException, KeyStoreException, NoSuchAlgorithmException {
         LOGGER.info("Init Elasticsearch endpoint={} username={} password=*********", config.getEndpoint(), config.getUsername());
 
@@ -360,7 +731,21 @@ public abstract class ElassandraCrud<T, K> {
         session.execute(createTable);
     }
 
+    /**
+     * Create a new row, absent (null) fields are left unset instead of written as tombstones.
+     */
     public T create(T t) throws TechnicalException {
+        try {
+            return insert(t, unsetNulls);
+        } finally {
+            evict(t);
+        }
+    }
+
+    /**
+     * @param unsetNulls leave null columns unset, or write them (as tombstones) to overwrite an existing row.
+     */
+    protected T insert(T t, boolean unsetNulls) throws TechnicalException {
         if (t == null)
             throw new IllegalStateException("cannot upsert null object");
         Object[] pkCols = pk(values(t));
@@ -369,8 +754,10 @@ public abstract class ElassandraCrud<T, K> {
                 throw new IllegalStateException("Primary key column["+i+"] is null");
         try {
             LOGGER.debug("t={}",t);
-            session.execute(insertStmt.bind(values(t)));
-            return fromRow(session.execute(selectStmt.bind(pkCols)).one());
+            session.execute(profiled(Operation.WRITE, bindInsert(values(t), unsetNulls)));
+            if (!readBackOnWrite())
+                return t;
+            return fromRow(session.execute(profiled(Operation.READ, selectStmt.bind(pkCols))).one());
         } catch (final Exception ex) {
             String message = String.format("Failed to upsert table=%s primary key=%s", tableName, Arrays.toString(pkCols));
             LOGGER.error(message, ex);
@@ -378,9 +765,11 @@ public abstract class ElassandraCrud<T, K> {
         }
     }
 
+    /**
+     * Bulk create, see {@link #createAsync(List)}.
+     */
     public void create(List<T> tList) throws TechnicalException {
-        for(T t : tList)
-            create(t);
+        join(createAsync(tList));
     }
 
     public T update(T t) throws TechnicalException {
@@ -390,42 +779,928 @@ public abstract class ElassandraCrud<T, K> {
         for(int i=0; i < pkCols.length; i++)
             if (pkCols[i] == null)
                 throw new IllegalStateException("Primary key column["+i+"] is null");
-        if (session.execute(selectStmt.bind(pkCols)).one() == null)
-           throw new IllegalStateException(String.format("No object found in [%s] with primary key %s", tableName, Arrays.toString(pkCols)));
-        return create(t);
+        try {
+            if (!readBackOnWrite()) {
+                boolean applied;
+                try {
+                    applied = session.execute(profiled(Operation.WRITE, updateIfExistsStmt.bind(updateValues(values(t))))).wasApplied();
+                } catch (final Exception ex) {
+                    String message = String.format("Failed to update table=%s primary key=%s", tableName, Arrays.toString(pkCols));
+                    LOGGER.error(message, ex);
+                    throw new TechnicalException(message, ex);
+                }
+                if (!applied)
+                    throw new IllegalStateException(String.format("No object found in [%s] with primary key %s", tableName, Arrays.toString(pkCols)));
+                return t;
+            }
+            Row row = session.execute(profiled(Operation.READ, selectStmt.bind(pkCols))).one();
+            if (row == null)
+               throw new IllegalStateException(String.format("No object found in [%s] with primary key %s", tableName, Arrays.toString(pkCols)));
+            if (partialUpdate()) {
+                try {
+                    return partialUpdateAsync(values(fromRow(row)), t).join();
+                } catch (final Exception ex) {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    String message = String.format("Failed to update table=%s primary key=%s", tableName, Arrays.toString(pkCols));
+                    LOGGER.error(message, cause);
+                    throw new TechnicalException(message, cause);
+                }
+            }
+            return insert(t, false);
+        } finally {
+            evict(t);
+        }
     }
 
     public Optional<T> findById(K k) throws TechnicalException {
         if (k == null)
             throw new IllegalStateException("No primary key column");
-        T t  = fromRow(session.execute(selectStmt.bind(k)).one());
+        final Object key = cacheKey(k);
+        Row row = rowCache == null ? null : rowCache.getIfPresent(key);
+        if (row == null)
+            row = coalesceReads() ? inflightReads.get(key, () -> loadRow(k, key)) : loadRow(k, key);
+        T t  = fromRow(row);
         LOGGER.debug("t={}", t);
         return Optional.ofNullable(t);
     }
 
+    /**
+     * Read the given fields of a row, see {@link #columnsExcept(String...)}. A cached row is used when present,
+     * projected rows are never cached, and concurrent reads of the same fields of a row are coalesced.
+     */
+    protected Optional<T> findById(K k, Set<String> fields) throws TechnicalException {
+        if (fields == null)
+            return findById(k);
+        if (k == null)
+            throw new IllegalStateException("No primary key column");
+        final Object key = cacheKey(k);
+        Row row = rowCache == null ? null : rowCache.getIfPresent(key);
+        if (row == null) {
+            final PreparedStatement statement = selectStmt(fields);
+            row = coalesceReads()
+                    ? inflightReads.get(new ProjectionKey(key, statement.getQueryString()), () -> readRow(statement, k))
+                    : readRow(statement, k);
+        }
+        return Optional.ofNullable(fromRow(row));
+    }
+
     public void delete(K k) throws TechnicalException {
         if (k == null)
             throw new IllegalStateException("cannot delete null primary key");
-        session.execute(deleteStmt.bind(k));
+        try {
+            session.execute(profiled(Operation.DELETE, deleteStmt.bind(k)));
+        } finally {
+            evictKey(cacheKey(k));
+        }
     }
 
     public void deletePartition(Object ... arg) throws TechnicalException {
         if (arg == null)
             throw new IllegalStateException("cannot delete null partition key");
-        session.execute(deletePartitionStmt.bind(arg));
+        try {
+            session.execute(profiled(Operation.DELETE, deletePartitionStmt.bind(arg)));
+        } finally {
+            evictPartition(arg);
+        }
+    }
+
+    /**
+     * @return the hit and miss statistics of the read-through cache, if enabled.
+     */
+    public Optional<CacheStats> cacheStats() {
+        return rowCache == null ? Optional.empty() : Optional.of(rowCache.stats());
+    }
+
+    protected Object pkCacheKey(Object[] pkCols) {
+        return pkCols.length == 1 ? pkCols[0] : Arrays.asList(pkCols);
+    }
+
+    /**
+     * Composite primary keys are given as Object[], compare their content.
+     */
+    protected Object cacheKey(K k) {
+        return k instanceof Object[] ? pkCacheKey((Object[]) k) : k;
+    }
+
+    protected boolean coalesceReads() {
+        return config != null && config.isCoalesceReads();
+    }
+
+    private Row loadRow(K k, Object key) {
+        final long generation = rowGeneration.get();
+        Row row = readRow(selectStmt, k);
+        cacheRow(key, row, generation);
+        return row;
+    }
+
+    private Row readRow(PreparedStatement statement, K k) {
+        return session.execute(profiled(Operation.READ, bindKey(statement, k))).one();
+    }
+
+    /**
+     * Coalescing key of a projected read, forgotten with the row.
+     */
+    private static final class ProjectionKey {
+        final Object key;
+        final String query;
+
+        ProjectionKey(Object key, String query) {
+            this.key = key;
+            this.query = query;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ProjectionKey && key.equals(((ProjectionKey) o).key) && query.equals(((ProjectionKey) o).query);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * key.hashCode() + query.hashCode();
+        }
+    }
+
+    private static Object rowKey(Object key) {
+        return key instanceof ProjectionKey ? ((ProjectionKey) key).key : key;
+    }
+
+    /**
+     * Cache a row, unless it was read before a concurrent write.
+     */
+    protected void cacheRow(Object key, Row row, long generation) {
+        if (rowCache != null && row != null && generation == rowGeneration.get())
+            rowCache.put(key, row);
+    }
+
+    protected void evict(T t) {
+        if (t != null)
+            evictKey(pkCacheKey(pk(values(t))));
+    }
+
+    protected void evictKey(Object key) {
+        rowGeneration.incrementAndGet();
+        if (key != null) {
+            inflightReads.forget(key);
+            inflightReads.forgetIf(k -> k instanceof ProjectionKey && key.equals(((ProjectionKey) k).key));
+            if (rowCache != null)
+                rowCache.invalidate(key);
+        }
+        evictSearches();
+    }
+
+    protected void evictPartition(Object[] partitionKey) {
+        if (ptLength == pkLength) {
+            evictKey(pkCacheKey(partitionKey));
+            return;
+        }
+        rowGeneration.incrementAndGet();
+        final List<Object> prefix = Arrays.asList(partitionKey);
+        final Predicate<Object> inPartition = key -> key instanceof List && ((List<?>) key).subList(0, prefix.size()).equals(prefix);
+        inflightReads.forgetIf(key -> inPartition.test(rowKey(key)));
+        if (rowCache != null)
+            rowCache.asMap().keySet().removeIf(inPartition);
+        evictSearches();
+    }
+
+    /**
+     * Any write may change the hits of any query.
+     */
+    protected void evictSearches() {
+        searchGeneration.incrementAndGet();
+        inflightSearches.forgetAll();
+        if (searchCache != null)
+            searchCache.invalidateAll();
+    }
+
+    /**
+     * @return the rows matching an Elasticsearch query, from the search cache if enabled.
+     */
+    protected List<Row> searchRows(String esQuery) {
+        return searchRows(esQueryStmt, esQuery);
+    }
+
+    /**
+     * @return at most limit rows matching an Elasticsearch query, from the search cache if enabled.
+     */
+    protected List<Row> searchRows(String esQuery, int limit) {
+        return searchRows(esQueryStmtWithLimit, esQuery, limit);
+    }
+
+    private List<Row> searchRows(PreparedStatement statement, Object... args) {
+        if (searchCache == null && !coalesceReads())
+            return session.execute(profiled(Operation.SEARCH, statement.bind(args))).all();
+        // the query string holds the projection and the index
+        final List<Object> key = new ArrayList<>(args.length + 1);
+        key.add(statement.getQueryString());
+        key.addAll(Arrays.asList(args));
+        List<Row> rows = searchCache == null ? null : searchCache.getIfPresent(key);
+        if (rows == null) {
+            Supplier<List<Row>> search = () -> {
+                final long generation = searchGeneration.get();
+                List<Row> hits = Collections.unmodifiableList(session.execute(profiled(Operation.SEARCH, statement.bind(args))).all());
+                // do not cache hits read before a concurrent write
+                if (searchCache != null && generation == searchGeneration.get())
+                    searchCache.put(key, hits);
+                return hits;
+            };
+            rows = coalesceReads() ? inflightSearches.get(key, search) : search.get();
+        }
+        return rows;
+    }
+
+    /**
+     * Cursor paging with search_after: hits are sorted on the sort fields of the search source, then on the id, and
+     * read after the cursor of the previous page. Any page then costs the same as the first one, whatever its depth.
+     *
+     * @param cursor the cursor of the previous page, or null to read the first page.
+     */
+    protected CursorPage<T> searchAfter(SearchSourceBuilder source, int pageSize, String cursor) throws TechnicalException {
+        return searchAfter(source, pageSize, cursor, null);
+    }
+
+    /**
+     * Cursor paging reading the given fields only, see {@link #searchAfter(SearchSourceBuilder, int, String)}.
+     * The sort fields are always read to build the cursor.
+     */
+    protected CursorPage<T> searchAfter(SearchSourceBuilder source, int pageSize, String cursor, Set<String> fields) throws TechnicalException {
+        final List<FieldSortBuilder> sorts = new ArrayList<>();
+        if (source.sorts() != null)
+            for(SortBuilder<?> sort : source.sorts()) {
+                // the cursor is built from the column values of the last row.
+                if (!(sort instanceof FieldSortBuilder) || !Arrays.asList(cols).contains(((FieldSortBuilder) sort).getFieldName()))
+                    throw new IllegalStateException("Cursor paging requires sorts on columns of table=" + tableName + ", unsupported sort " + sort);
+                sorts.add((FieldSortBuilder) sort);
+            }
+        // add the tie-breaker and the paging settings to a copy, the caller's source may be reused for the next page.
+        final SearchSourceBuilder page = copy(source);
+        if (sorts.stream().noneMatch(sort -> "id".equals(sort.getFieldName()))) {
+            FieldSortBuilder tieBreaker = SortBuilders.fieldSort("id").order(SortOrder.ASC);
+            page.sort(tieBreaker);
+            sorts.add(tieBreaker);
+        }
+        int pageNumber = 0;
+        if (cursor != null) {
+            List<Object> after = decodeCursor(cursor);
+            pageNumber = ((Number) after.get(0)).intValue();
+            page.searchAfter(after.subList(1, after.size()).toArray());
+        }
+        page.size(pageSize);
+        String esQuery = page.toString(ToXContent.EMPTY_PARAMS);
+        LOGGER.debug("es_query={}", esQuery);
+
+        Set<String> projection = null;
+        if (fields != null) {
+            projection = new LinkedHashSet<>(fields);
+            for(FieldSortBuilder sort : sorts)
+                projection.add(sort.getFieldName());
+        }
+        final ResultSet resultSet = session.execute(profiled(Operation.SEARCH, esQueryStmt(projection, true).bind(esQuery, pageSize)));
+        final ElasticIncomingPayload payload = new ElasticIncomingPayload(resultSet.getExecutionInfo().getIncomingPayload());
+        final List<Row> rows = resultSet.all();
+        String next = null;
+        if (rows.size() >= pageSize) {
+            Row last = rows.get(rows.size() - 1);
+            List<Object> after = new ArrayList<>(sorts.size() + 1);
+            after.add(pageNumber + 1);
+            for(FieldSortBuilder sort : sorts)
+                after.add(sortValue(last, sort));
+            next = encodeCursor(after);
+        }
+        List<T> content = rows.stream().map(this::fromRow).collect(Collectors.toList());
+        return new CursorPage<>(new Page<>(content, pageNumber, content.size(), payload.hitTotal), next);
+    }
+
+    /**
+     * @return a deep copy of a search source.
+     */
+    protected static SearchSourceBuilder copy(SearchSourceBuilder source) throws TechnicalException {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            source.writeTo(out);
+            try (StreamInput in = new NamedWriteableAwareStreamInput(out.bytes().streamInput(), SearchWriteables.REGISTRY)) {
+                return new SearchSourceBuilder(in);
+            }
+        } catch (IOException e) {
+            throw new TechnicalException("Failed to copy search source", e);
+        }
+    }
+
+    // lazily built, only cursor paging copies search sources.
+    private static class SearchWriteables {
+        static final NamedWriteableRegistry REGISTRY = new NamedWriteableRegistry(
+                new SearchModule(Settings.EMPTY, false, Collections.emptyList()).getNamedWriteables());
+    }
+
+    /**
+     * @return the value of a sort field as Elasticsearch sorts it, dates as epoch millis and missing numbers as
+     * the missing value Elasticsearch substitutes: +/-Infinity for floating types, Long.MAX_VALUE/MIN_VALUE otherwise.
+     */
+    protected static Object sortValue(Row row, FieldSortBuilder sort) {
+        Object value = row.getObject(sort.getFieldName());
+        if (value instanceof Date)
+            return ((Date) value).getTime();
+        if (value == null) {
+            DataType.Name type = row.getColumnDefinitions().getType(sort.getFieldName()).getName();
+            if (!NUMERIC_TYPES.contains(type))
+                return null;
+            if (sort.missing() != null && !"_last".equals(sort.missing()) && !"_first".equals(sort.missing()))
+                return sort.missing();
+            // missing values are sorted last by default.
+            boolean highest = (sort.order() == SortOrder.DESC) == "_first".equals(sort.missing());
+            if (FLOATING_TYPES.contains(type))
+                return highest ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+            return highest ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+        return value;
+    }
+
+    private static String encodeCursor(List<Object> after) throws TechnicalException {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(CURSOR_MAPPER.writeValueAsBytes(after));
+        } catch (IOException e) {
+            throw new TechnicalException("Failed to encode cursor", e);
+        }
+    }
+
+    private static List<Object> decodeCursor(String cursor) {
+        try {
+            return CURSOR_MAPPER.readValue(Base64.getUrlDecoder().decode(cursor), new TypeReference<List<Object>>() {});
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid cursor " + cursor, e);
+        }
+    }
+
+    /**
+     * @return the hit and miss statistics of the search cache, if enabled.
+     */
+    public Optional<CacheStats> searchCacheStats() {
+        return searchCache == null ? Optional.empty() : Optional.of(searchCache.stats());
+    }
+
+    /**
+     * @return the number of hits of an Elasticsearch query, read from the Elassandra payload without fetching any row.
+     */
+    public long count(QueryBuilder query) throws TechnicalException {
+        return hitTotal(new SearchSourceBuilder().query(query).size(0));
+    }
+
+    /**
+     * @return true if an Elasticsearch query has at least one hit, each shard stops searching at its first hit.
+     */
+    public boolean exists(QueryBuilder query) throws TechnicalException {
+        return hitTotal(new SearchSourceBuilder().query(query).size(0).terminateAfter(1)) > 0;
+    }
+
+    /**
+     * @return the maximum value of a numeric field over the hits of an Elasticsearch query, computed by a max
+     * aggregation, or empty when no hit has a value.
+     */
+    public Optional<Double> max(String field, QueryBuilder query) throws TechnicalException {
+        final Row row = aggregate(new SearchSourceBuilder().query(query).size(0).aggregation(AggregationBuilders.max(field).field(field))).one();
+        final Object value = row == null ? null : row.getObject(0);
+        if (!(value instanceof Number) || Double.isInfinite(((Number) value).doubleValue()))
+            return Optional.empty();
+        return Optional.of(((Number) value).doubleValue());
+    }
+
+    private long hitTotal(SearchSourceBuilder source) throws TechnicalException {
+        final String esQuery = source.toString(ToXContent.EMPTY_PARAMS);
+        LOGGER.debug("es_query={}", esQuery);
+        try {
+            final ResultSet resultSet = session.execute(profiled(Operation.SEARCH, unpaged(esQueryStmt.bind(esQuery))));
+            return new ElasticIncomingPayload(resultSet.getExecutionInfo().getIncomingPayload()).hitTotal;
+        } catch (Exception e) {
+            throw new TechnicalException(String.format(Locale.ROOT, "Failed to count table=%s es_query=%s", tableName, esQuery), e);
+        }
+    }
+
+    /**
+     * Run the aggregations of an Elasticsearch query. Elassandra returns them as rows whose columns are named after
+     * the aggregations, so they run as a regular statement rather than a prepared one bound to the table columns.
+     */
+    protected ResultSet aggregate(SearchSourceBuilder source) throws TechnicalException {
+        final String esQuery = source.toString(ToXContent.EMPTY_PARAMS);
+        LOGGER.debug("es_query={}", esQuery);
+        try {
+            return session.execute(profiled(Operation.SEARCH, unpaged(new SimpleStatement(esAggregationQuery, esQuery))));
+        } catch (Exception e) {
+            throw new TechnicalException(String.format(Locale.ROOT, "Failed to aggregate table=%s es_query=%s", tableName, esQuery), e);
+        }
+    }
+
+    /**
+     * Run the aggregations of an Elasticsearch query, see {@link #aggregate(SearchSourceBuilder)}. Bucket
+     * aggregations are flattened, one row per leaf bucket.
+     *
+     * @return the rows as maps from the column names to their values, the columns of a bucket are named after the
+     * path of its aggregation followed by key and count (e.g. api.status.key and api.status.count), those of a
+     * metric after its path followed by the metric type (e.g. api.rate.avg).
+     */
+    protected List<Map<String, Object>> aggregations(SearchSourceBuilder source) throws TechnicalException {
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        for(Row row : aggregate(source)) {
+            final Map<String, Object> columns = new LinkedHashMap<>();
+            for(int i = 0; i < row.getColumnDefinitions().size(); i++)
+                columns.put(row.getColumnDefinitions().getName(i), row.getObject(i));
+            rows.add(columns);
+        }
+        return rows;
+    }
+
+    /**
+     * @return the key of a bucket of an aggregation row, dates as epoch millis.
+     */
+    protected static Object bucketKey(Map<String, Object> row, String path) {
+        final Object key = row.get(path + ".key");
+        return key instanceof Date ? ((Date) key).getTime() : key;
+    }
+
+    /**
+     * @return the document count of a bucket of an aggregation row.
+     */
+    protected static long bucketCount(Map<String, Object> row, String path) {
+        final Object count = row.get(path + ".count");
+        return count instanceof Number ? ((Number) count).longValue() : 0L;
+    }
+
+    /**
+     * @return the value of a single value metric of an aggregation row, whatever its type, or null.
+     */
+    protected static Number metric(Map<String, Object> row, String path) {
+        for(Map.Entry<String, Object> column : row.entrySet())
+            if (column.getKey().startsWith(path + ".") && column.getValue() instanceof Number)
+                return (Number) column.getValue();
+        return null;
+    }
+
+    /**
+     * A paged es_query runs as an Elasticsearch scroll of fetch size hits, whatever the size of the query.
+     */
+    private static Statement unpaged(Statement statement) {
+        return statement.setFetchSize(Integer.MAX_VALUE);
     }
 
     public Set<T> findAll() throws TechnicalException {
-        return session.execute(selectAllStmt.bind()).all().stream().map(this::fromRow).collect(Collectors.toSet());
+        return new HashSet<>(join(scanAsync()));
+    }
+
+    /**
+     * Lazily stream all the rows of the table, see {@link #stream(Operation, Statement)}.
+     */
+    public Stream<T> stream() {
+        return stream(Operation.READ, selectAllStmt.bind());
+    }
+
+    /**
+     * Lazily stream the hits of an Elasticsearch query, see {@link #stream(Operation, Statement)}.
+     */
+    public Stream<T> searchStream(String esQuery) {
+        return searchStream(esQuery, null);
+    }
+
+    /**
+     * Lazily stream the given fields of the hits of an Elasticsearch query, see {@link #columnsExcept(String...)}.
+     */
+    protected Stream<T> searchStream(String esQuery, Set<String> fields) {
+        return stream(Operation.SEARCH, esQueryStmt(fields, false).bind(esQuery));
+    }
+
+    /**
+     * Lazily stream all the hits of an Elasticsearch query, see {@link #scrollAsync(SearchSourceBuilder, Consumer)}.
+     * Slices are read one after the other.
+     */
+    public Stream<T> scroll(SearchSourceBuilder source) {
+        return scroll(source, null);
+    }
+
+    /**
+     * Lazily stream the given fields of all the hits of an Elasticsearch query, see {@link #scroll(SearchSourceBuilder)}.
+     */
+    protected Stream<T> scroll(SearchSourceBuilder source, Set<String> fields) {
+        return slices(source).stream().flatMap(esQuery -> searchStream(esQuery, fields));
+    }
+
+    /**
+     * Scroll all the hits of an Elasticsearch query by chunks of stream.fetchSize hits, whatever the result window
+     * of the index: Elassandra runs a paged es_query as an Elasticsearch scroll. Unsorted queries are split into
+     * scroll.slices sliced scrolls read in parallel. Each chunk is handed to the consumer as soon as its page is
+     * fetched, on the driver I/O threads and possibly concurrently from several slices, so the consumer must be
+     * thread-safe and must not block. Memory use is bounded by two pages per slice.
+     *
+     * @return a future of the number of hits.
+     */
+    public CompletableFuture<Long> scrollAsync(SearchSourceBuilder source, Consumer<List<T>> consumer) {
+        final List<CompletableFuture<Long>> futures = slices(source).stream()
+                .map(esQuery -> {
+                    Statement statement = esQueryStmt.bind(esQuery);
+                    if (config != null && config.getStreamFetchSize() > 0)
+                        statement.setFetchSize(config.getStreamFetchSize());
+                    return technical(executeAsync(profiled(Operation.SEARCH, statement))
+                            .thenCompose(rs -> scrollPages(rs, consumer, 0L)), "Failed to scroll table=%s es_query=%s", tableName, esQuery);
+                })
+                .collect(Collectors.toList());
+        return ConcurrencyWindow.allDone(futures)
+                .thenApply(v -> futures.stream().mapToLong(CompletableFuture::join).sum());
+    }
+
+    private CompletableFuture<Long> scrollPages(ResultSet rs, Consumer<List<T>> consumer, long count) {
+        final List<T> chunk = new ArrayList<>(rs.getAvailableWithoutFetching());
+        for(int remaining = rs.getAvailableWithoutFetching(); remaining > 0; remaining--)
+            chunk.add(fromRow(rs.one()));
+        if (rs.isFullyFetched()) {
+            if (!chunk.isEmpty())
+                consumer.accept(chunk);
+            return CompletableFuture.completedFuture(count + chunk.size());
+        }
+        // fetch the next page while the consumer handles this one
+        final CompletableFuture<ResultSet> next = ListenableFutures.toCompletableFuture(rs.fetchMoreResults());
+        consumer.accept(chunk);
+        return next.thenCompose(more -> scrollPages(more, consumer, count + chunk.size()));
+    }
+
+    /**
+     * @return the es_query of each slice of a scroll, a single one for sorted queries to keep the order of the hits.
+     */
+    protected List<String> slices(SearchSourceBuilder source) {
+        final int max = config == null ? 1 : config.getScrollSlices();
+        if (max <= 1 || (source.sorts() != null && !source.sorts().isEmpty()))
+            return Collections.singletonList(source.toString(ToXContent.EMPTY_PARAMS));
+        final List<String> slices = new ArrayList<>(max);
+        for(int i = 0; i < max; i++)
+            slices.add(source.copyWithNewSlice(new SliceBuilder(i, max)).toString(ToXContent.EMPTY_PARAMS));
+        return slices;
     }
 
+    /**
+     * Lazily stream the rows of a statement, fetched by pages of stream.fetchSize rows (unless the execution profile
+     * sets a fetch size, or the session default when neither does). The next page is requested in the background when half of the current one is consumed,
+     * so memory use is bounded by two pages whatever the result size. Driver errors are thrown while iterating.
+     */
+    protected Stream<T> stream(Operation operation, Statement statement) {
+        if (config != null && config.getStreamFetchSize() > 0)
+            statement.setFetchSize(config.getStreamFetchSize());
+        final ResultSet rs = session.execute(profiled(operation, statement));
+        final int fetchSize = statement.getFetchSize() > 0 ? statement.getFetchSize() : defaultFetchSize();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(rs, Math.max(1, fetchSize / 2)), Spliterator.ORDERED), false);
+    }
+
+    /**
+     * @return the fetch size of the statements that do not set one.
+     */
+    protected int defaultFetchSize() {
+        final Cluster cluster = session.getCluster();
+        return cluster == null ? QueryOptions.DEFAULT_FETCH_SIZE : cluster.getConfiguration().getQueryOptions().getFetchSize();
+    }
+
+    /**
+     * Full table scan, see {@link #scanAsync()}. Rows are streamed range by range as soon as each range is
+     * fetched, driver errors are thrown while iterating.
+     */
+    public Stream<T> scan() {
+        return scanRanges().stream().flatMap(future -> future.join().stream());
+    }
+
+    /**
+     * Full table scan split by the token ranges of the ring into at most scan.maxRanges queries, with at most
+     * scan.concurrency ranges read in parallel, so that the scan is spread over all the nodes rather than driven
+     * by a single coordinator.
+     */
+    public CompletableFuture<List<T>> scanAsync() {
+        final List<CompletableFuture<List<T>>> futures = scanRanges();
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]))
+                .thenApply(v -> futures.stream().flatMap(f -> f.join().stream()).collect(Collectors.toList()));
+    }
+
+    protected List<CompletableFuture<List<T>>> scanRanges() {
+        final Metadata metadata = session.getCluster().getMetadata();
+        final Set<TokenRange> ring = metadata.getTokenRanges();
+        final int maxRanges = config == null ? 1 : config.getScanMaxRanges();
+        final List<TokenRange> ranges = new ArrayList<>();
+        final List<Set<Host>> owners = new ArrayList<>();
+        Token minToken = null;
+        if (scanRangeStmt != null && maxRanges > 1 && !ring.isEmpty()) {
+            // ranges in ring order, the wrapping range split at the minimum token
+            final String keyspace = Metadata.quote(session.getLoggedKeyspace());
+            final Map<TokenRange, Set<Host>> unwrapped = new TreeMap<>();
+            for(TokenRange range : ring) {
+                final List<TokenRange> parts = range.unwrap();
+                if (parts.size() > 1)
+                    minToken = parts.get(0).getEnd();
+                for(TokenRange part : parts)
+                    unwrapped.put(part, metadata.getReplicas(keyspace, range));
+            }
+            // merge the contiguous ranges of the same replicas, a ring of vnodes is not worth hundreds of queries
+            for(Map.Entry<TokenRange, Set<Host>> entry : unwrapped.entrySet()) {
+                final int last = ranges.size() - 1;
+                if (last >= 0 && owners.get(last).equals(entry.getValue()) && ranges.get(last).getEnd().equals(entry.getKey().getStart())) {
+                    ranges.set(last, metadata.newTokenRange(ranges.get(last).getStart(), entry.getKey().getEnd()));
+                } else {
+                    ranges.add(entry.getKey());
+                    owners.add(entry.getValue());
+                }
+            }
+        }
+        if (ranges.size() <= 1) {
+            // token metadata disabled, or a single replica set
+            return Collections.singletonList(technical(executeAsync(profiled(Operation.READ, selectAllStmt.bind()))
+                    .thenCompose(rs -> fetchAll(rs, new ArrayList<>())), "Failed to scan table=%s", tableName));
+        }
+
+        // then merge the neighbour ranges down to scan.maxRanges queries, each owned by the replicas of its end
+        final Map<Set<Host>, Deque<TokenRange>> replicaSets = new LinkedHashMap<>();
+        final int groups = Math.min(maxRanges, ranges.size());
+        for(int i = 0; i < groups; i++) {
+            final int from = i * ranges.size() / groups, to = (i + 1) * ranges.size() / groups;
+            replicaSets.computeIfAbsent(owners.get(to - 1), k -> new ArrayDeque<>())
+                    .add(to - from == 1 ? ranges.get(from) : metadata.newTokenRange(ranges.get(from).getStart(), ranges.get(to - 1).getEnd()));
+        }
+
+        // interleave the ranges of the replica sets, so that the ranges in flight are read from different nodes
+        final List<TokenRange> queries = new ArrayList<>(groups);
+        while (!replicaSets.isEmpty()) {
+            for(Iterator<Deque<TokenRange>> it = replicaSets.values().iterator(); it.hasNext(); ) {
+                Deque<TokenRange> queue = it.next();
+                queries.add(queue.poll());
+                if (queue.isEmpty())
+                    it.remove();
+            }
+        }
+
+        final Token ringEnd = minToken;
+        final int concurrency = config.getScanConcurrency();
+        return ConcurrencyWindow.submit(queries, concurrency, range ->
+            technical(executeAsync(profiled(Operation.READ, scanRangeStatement(range, ringEnd)))
+                    .thenCompose(rs -> fetchAll(rs, new ArrayList<>())), "Failed to scan table=%s range=%s", tableName, range));
+    }
+
+    /**
+     * Bind the query of a token range, routed to the replicas of its end token. The range ending at the minimum
+     * token, the end of the ring, has no upper bound (token(k) <= minToken would match nothing).
+     */
+    protected Statement scanRangeStatement(TokenRange range, Token minToken) {
+        final BoundStatement statement = range.getEnd().equals(minToken)
+                ? scanTailStmt.bind().setToken(0, range.getStart())
+                : scanRangeStmt.bind().setToken(0, range.getStart()).setToken(1, range.getEnd());
+        statement.setRoutingToken(range.getEnd());
+        return statement;
+    }
+
+    protected Iterator<T> iterator(final ResultSet rs, final int prefetchThreshold) {
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return !rs.isExhausted();
+            }
+
+            @Override
+            public T next() {
+                if (rs.getAvailableWithoutFetching() == prefetchThreshold && !rs.isFullyFetched())
+                    rs.fetchMoreResults();
+                Row row = rs.one();
+                if (row == null)
+                    throw new NoSuchElementException();
+                return fromRow(row);
+            }
+        };
+    }
+
+    /**
+     * Multi-get, see {@link #findAllAsync(List)}.
+     */
     public List<T> findAll(List<K> kList) throws TechnicalException {
-        List<T> result = new ArrayList<>();
-        for(K k : kList) {
-            Optional<T> o = findById(k);
-            if (o.isPresent())
-                result.add(o.get());
+        return join(findAllAsync(kList));
+    }
+
+    /*
+     * Asynchronous CRUD, built on executeAsync. Futures complete on the driver I/O threads, so dependent stages
+     * must not block (or use the *Async variants of CompletableFuture). Driver errors complete the futures
+     * exceptionally with a TechnicalException, invalid arguments with an IllegalStateException.
+     */
+
+    public CompletableFuture<T> createAsync(T t) {
+        return insertAsync(t, unsetNulls).whenComplete((r, e) -> evict(t));
+    }
+
+    protected CompletableFuture<T> insertAsync(T t, boolean unsetNulls) {
+        if (t == null)
+            return failed(new IllegalStateException("cannot upsert null object"));
+        final Object[] pkCols = pk(values(t));
+        for(int i=0; i < pkCols.length; i++)
+            if (pkCols[i] == null)
+                return failed(new IllegalStateException("Primary key column["+i+"] is null"));
+        LOGGER.debug("t={}",t);
+        if (!readBackOnWrite())
+            return technical(executeAsync(profiled(Operation.WRITE, bindInsert(values(t), unsetNulls))).thenApply(rs -> t),
+                    "Failed to upsert table=%s primary key=%s", tableName, Arrays.toString(pkCols));
+        return technical(executeAsync(profiled(Operation.WRITE, bindInsert(values(t), unsetNulls)))
+                .thenCompose(rs -> executeAsync(profiled(Operation.READ, selectStmt.bind(pkCols))))
+                .thenApply(rs -> fromRow(rs.one())),
+                "Failed to upsert table=%s primary key=%s", tableName, Arrays.toString(pkCols));
+    }
+
+    /**
+     * Bulk create without read-back, keeping at most bulk.concurrency inserts in flight. Rows of the same partition
+     * are grouped by up to bulk.batchSize in UNLOGGED batches, applied by a single replica set.
+     * If some rows fail, the future fails with a TechnicalException carrying a suppressed exception per failed row.
+     *
+     * @return the written objects in the input order
+     */
+    public CompletableFuture<List<T>> createAsync(List<T> tList) {
+        final int batchSize = config == null ? 1 : Math.max(1, config.getBulkBatchSize());
+        final int concurrency = config == null ? 1 : config.getBulkConcurrency();
+        final Map<Integer, Throwable> failures = new ConcurrentHashMap<>();
+
+        // group row indexes by partition key, preserving the input order
+        final Map<List<Object>, List<Integer>> partitions = new LinkedHashMap<>();
+        for(int i = 0; i < tList.size(); i++) {
+            T t = tList.get(i);
+            if (t == null) {
+                failures.put(i, new IllegalStateException("cannot upsert null object"));
+                continue;
+            }
+            Object[] pkCols = pk(values(t));
+            if (Arrays.stream(pkCols).anyMatch(Objects::isNull)) {
+                failures.put(i, new IllegalStateException("Primary key column is null, primary key=" + Arrays.toString(pkCols)));
+                continue;
+            }
+            partitions.computeIfAbsent(Arrays.asList(Arrays.copyOf(pkCols, ptLength)), k -> new ArrayList<>()).add(i);
         }
+        final List<List<Integer>> groups = new ArrayList<>();
+        for(List<Integer> partition : partitions.values())
+            for(int from = 0; from < partition.size(); from += batchSize)
+                groups.add(partition.subList(from, Math.min(from + batchSize, partition.size())));
+
+        final List<CompletableFuture<ResultSet>> futures = ConcurrencyWindow.submit(groups, concurrency, group -> {
+            if (group.size() == 1)
+                return executeAsync(profiled(Operation.WRITE, bindInsert(values(tList.get(group.get(0))), unsetNulls)));
+            BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+            for(int i : group)
+                batch.add(bindInsert(values(tList.get(i)), unsetNulls));
+            return executeAsync(profiled(Operation.WRITE, batch));
+        });
+
+        return ConcurrencyWindow.allDone(futures).thenCompose(v -> {
+            for(List<Integer> group : groups)
+                for(int i : group)
+                    evict(tList.get(i));
+            for(int g = 0; g < groups.size(); g++) {
+                try {
+                    futures.get(g).join();
+                } catch (CompletionException e) {
+                    for(int i : groups.get(g))
+                        failures.put(i, e.getCause() == null ? e : e.getCause());
+                }
+            }
+            if (failures.isEmpty())
+                return CompletableFuture.completedFuture(tList);
+            String message = String.format(Locale.ROOT, "Failed to create %d/%d rows in table=%s", failures.size(), tList.size(), tableName);
+            TechnicalException exception = new TechnicalException(message);
+            failures.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(e -> {
+                T t = tList.get(e.getKey());
+                exception.addSuppressed(new TechnicalException(String.format(Locale.ROOT, "Failed to create row[%d] primary key=%s",
+                        e.getKey(), t == null ? null : Arrays.toString(pk(values(t)))), e.getValue()));
+            });
+            LOGGER.error(message, exception);
+            return failed(exception);
+        });
+    }
+
+    public CompletableFuture<T> updateAsync(T t) {
+        if (t == null)
+            return failed(new IllegalStateException("cannot update null object"));
+        final Object[] pkCols = pk(values(t));
+        for(int i=0; i < pkCols.length; i++)
+            if (pkCols[i] == null)
+                return failed(new IllegalStateException("Primary key column["+i+"] is null"));
+        if (!readBackOnWrite())
+            return technical(executeAsync(profiled(Operation.WRITE, updateIfExistsStmt.bind(updateValues(values(t))))),
+                    "Failed to update table=%s primary key=%s", tableName, Arrays.toString(pkCols)).thenCompose(rs -> {
+                if (!rs.wasApplied())
+                    return failed(new IllegalStateException(String.format("No object found in [%s] with primary key %s", tableName, Arrays.toString(pkCols))));
+                return CompletableFuture.completedFuture(t);
+            }).whenComplete((r, e) -> evict(t));
+        return executeAsync(profiled(Operation.READ, selectStmt.bind(pkCols))).thenCompose(rs -> {
+            Row row = rs.one();
+            if (row == null)
+                return failed(new IllegalStateException(String.format("No object found in [%s] with primary key %s", tableName, Arrays.toString(pkCols))));
+            if (partialUpdate())
+                return technical(partialUpdateAsync(values(fromRow(row)), t), "Failed to update table=%s primary key=%s", tableName, Arrays.toString(pkCols));
+            return insertAsync(t, false);
+        }).whenComplete((r, e) -> evict(t));
+    }
+
+    public CompletableFuture<Optional<T>> findByIdAsync(K k) {
+        if (k == null)
+            return failed(new IllegalStateException("No primary key column"));
+        final Object key = cacheKey(k);
+        final Row cached = rowCache == null ? null : rowCache.getIfPresent(key);
+        if (cached != null)
+            return CompletableFuture.completedFuture(Optional.ofNullable(fromRow(cached)));
+        final Supplier<CompletableFuture<Row>> read = () -> {
+            final long generation = rowGeneration.get();
+            return executeAsync(profiled(Operation.READ, bindKey(selectStmt, k))).thenApply(rs -> {
+                Row row = rs.one();
+                cacheRow(key, row, generation);
+                return row;
+            });
+        };
+        return technical((coalesceReads() ? inflightReads.execute(key, read) : read.get())
+                .thenApply(row -> Optional.ofNullable(fromRow(row))),
+                "Failed to find table=%s primary key=%s", tableName, k);
+    }
+
+    public CompletableFuture<Void> deleteAsync(K k) {
+        if (k == null)
+            return failed(new IllegalStateException("cannot delete null primary key"));
+        return technical(executeAsync(profiled(Operation.DELETE, bindKey(deleteStmt, k))).thenApply(rs -> (Void) null),
+                "Failed to delete table=%s primary key=%s", tableName, k).whenComplete((r, e) -> evictKey(cacheKey(k)));
+    }
+
+    /**
+     * Fetch all pages without blocking.
+     */
+    public CompletableFuture<Set<T>> findAllAsync() {
+        return technical(executeAsync(profiled(Operation.READ, selectAllStmt.bind()))
+                .thenCompose(rs -> fetchAll(rs, new ArrayList<>()))
+                .thenApply(list -> (Set<T>) new HashSet<>(list)),
+                "Failed to find all table=%s", tableName);
+    }
+
+    /**
+     * Multi-get issuing one single-partition read per distinct key, keeping at most multiGet.concurrency reads
+     * in flight. Reads are bound prepared statements, so the token aware policy routes each one to a replica
+     * owning the row, rather than loading a single coordinator with a multi-partition IN query.
+     *
+     * @return the rows found in the order of the keys, missing rows and duplicated keys are skipped.
+     */
+    public CompletableFuture<List<T>> findAllAsync(List<K> kList) {
+        final int concurrency = config == null ? kList.size() : config.getMultiGetConcurrency();
+        final Map<Object, K> distinct = new LinkedHashMap<>();
+        for(K k : kList)
+            distinct.putIfAbsent(k == null ? null : cacheKey(k), k);
+        final List<CompletableFuture<Optional<T>>> futures = ConcurrencyWindow.submit(new ArrayList<>(distinct.values()), concurrency, this::findByIdAsync);
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]))
+                .thenApply(v -> futures.stream().map(CompletableFuture::join)
+                        .filter(Optional::isPresent).map(Optional::get).collect(Collectors.toList()));
+    }
+
+    protected CompletableFuture<ResultSet> executeAsync(Statement statement) {
+        return ListenableFutures.toCompletableFuture(session.executeAsync(statement));
+    }
+
+    /**
+     * Consume the rows already fetched, then fetch the next page asynchronously.
+     */
+    protected CompletableFuture<List<T>> fetchAll(ResultSet rs, List<T> result) {
+        for(int remaining = rs.getAvailableWithoutFetching(); remaining > 0; remaining--)
+            result.add(fromRow(rs.one()));
+        if (rs.isFullyFetched())
+            return CompletableFuture.completedFuture(result);
+        return ListenableFutures.toCompletableFuture(rs.fetchMoreResults()).thenCompose(more -> fetchAll(more, result));
+    }
+
+    /**
+     * Composite primary keys are given as Object[].
+     */
+    protected BoundStatement bindKey(PreparedStatement statement, K k) {
+        return k instanceof Object[] ? statement.bind((Object[]) k) : statement.bind(k);
+    }
+
+    /**
+     * Wrap driver errors in a TechnicalException.
+     */
+    protected <V> CompletableFuture<V> technical(CompletableFuture<V> future, String format, Object... args) {
+        final CompletableFuture<V> result = new CompletableFuture<>();
+        future.whenComplete((v, t) -> {
+            if (t == null) {
+                result.complete(v);
+            } else {
+                Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                String message = String.format(format, args);
+                LOGGER.error(message, cause);
+                result.completeExceptionally(cause instanceof TechnicalException ? cause : new TechnicalException(message, cause));
+            }
+        });
         return result;
     }
+
+    /**
+     * Wait for an asynchronous operation, rethrowing its TechnicalException or IllegalStateException.
+     */
+    protected <V> V join(CompletableFuture<V> future) throws TechnicalException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TechnicalException)
+                throw (TechnicalException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new TechnicalException("Failed to access table=" + tableName, e.getCause());
+        }
+    }
+
+    protected static <V> CompletableFuture<V> failed(Throwable t) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        future.completeExceptionally(t);
+        return future;
+    }
 }
@@ -21,6 +21,7 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.apache.lucene.search.join.ScoreMode;
@@ -41,6 +42,7 @@ import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
 
 import io.gravitee.common.data.domain.Page;
+import io.gravitee.repository.exceptions.TechnicalException;
 import io.gravitee.repository.management.api.EventRepository;
 import io.gravitee.repository.management.api.search.EventCriteria;
 import io.gravitee.repository.management.api.search.Pageable;
@@ -108,7 +110,7 @@ public class ElassandraEventRepository extends ElassandraCrud<Event, String> imp
             final Event event = new Event();
             event.setId(row.getString("id"));
             event.setType(EventType.valueOf(row.getString("type").toUpperCase()));
-            event.setPayload(row.getString("payload"));
+            event.setPayload(row.getColumnDefinitions().contains("payload") ? row.getString("payload") : null);
             event.setParentId(row.getString("parent_id"));
             event.setProperties(row.getMap("event_properties", String.class, String.class));
             event.setCreatedAt(row.getTimestamp("created_at"));
@@ -118,7 +120,7 @@ public class ElassandraEventRepository extends ElassandraCrud<Event, String> imp
         return null;
     }
 
-    private String buildQuery(final EventCriteria criteria, Pageable pageable) {
+    private SearchSourceBuilder searchSource(final EventCriteria criteria) {
         BoolQueryBuilder queryBuilder = new BoolQueryBuilder();
         if (criteria != null) {
             if (criteria.getFrom() > 0 || criteria.getTo() > 0) {
@@ -149,9 +151,13 @@ public class ElassandraEventRepository extends ElassandraCrud<Event, String> imp
             }
         }
 
-        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder()
+        return new SearchSourceBuilder()
                 .query(queryBuilder.hasClauses() ? queryBuilder : QueryBuilders.matchAllQuery())
                 .sort("updated_at", SortOrder.DESC);
+    }
+
+    private String buildQuery(final EventCriteria criteria, Pageable pageable) {
+        SearchSourceBuilder searchSourceBuilder = searchSource(criteria);
 
         int pageSize = 1000;
         if (pageable != null) {
@@ -175,11 +181,33 @@ public class ElassandraEventRepository extends ElassandraCrud<Event, String> imp
         return resultSet.all().stream().map(this::fromRow).collect(Collectors.toList());
     }
 
+    /**
+     * Cursor paging of the events, see {@link ElassandraCrud#searchAfter(SearchSourceBuilder, int, String)}.
+     */
+    public CursorPage<Event> search(final EventCriteria criteria, int pageSize, String cursor) throws TechnicalException {
+        LOGGER.debug("criteria={} cursor={}", criteria, cursor);
+        return searchAfter(searchSource(criteria), pageSize, cursor);
+    }
+
     @Override
     public  Page<Event> search(final EventCriteria criteria, Pageable pageable) {
-        LOGGER.debug("criteria={} pageable={}", criteria, pageable);
+        return search(criteria, pageable, null);
+    }
+
+    /**
+     * Search events without their payload, for event lists.
+     */
+    public Page<Event> searchWithoutPayload(final EventCriteria criteria, Pageable pageable) {
+        return search(criteria, pageable, columnsExcept("payload"));
+    }
+
+    /**
+     * Search events reading the given fields only, fromRow only tolerates a missing payload.
+     */
+    protected Page<Event> search(final EventCriteria criteria, Pageable pageable, Set<String> fields) {
+        LOGGER.debug("criteria={} pageable={} fields={}", criteria, pageable, fields);
         String esQuery = buildQuery(criteria, pageable);
-        final ResultSet resultSet = session.execute(this.esQueryStmtWithLimit.bind(esQuery, pageable == null ? 1000 : pageable.pageSize()));
+        final ResultSet resultSet = session.execute(esQueryStmt(fields, true).bind(esQuery, pageable == null ? 1000 : pageable.pageSize()));
         ElasticIncomingPayload payload = new ElasticIncomingPayload(resultSet.getExecutionInfo().getIncomingPayload());
         List<Event> result = resultSet.all().stream().map(this::fromRow).collect(Collectors.toList());
         return new Page<>(result,
@@ -144,8 +144,7 @@ public class ElassandraGenericNotificationConfigRepository extends ElassandraCru
                     .query(queryBuilder.hasClauses() ? queryBuilder : QueryBuilders.matchAllQuery())
                     .toString(ToXContent.EMPTY_PARAMS);
             LOGGER.debug("query={}", esQuery);
-            final ResultSet resultSet = session.execute(this.esQueryStmt.bind(esQuery));
-            return resultSet.all().stream().map(this::fromRow).collect(Collectors.toList());
+            return searchRows(esQuery).stream().map(this::fromRow).collect(Collectors.toList());
         } catch (final Exception ex) {
             final String message = "Failed to find GenericNotificationConfig by hook="+hook+" referenceType="+referenceType+" referenceId="+referenceId;
             LOGGER.error(message, ex);
@@ -168,8 +167,7 @@ public class ElassandraGenericNotificationConfigRepository extends ElassandraCru
                     .query(queryBuilder.hasClauses() ? queryBuilder : QueryBuilders.matchAllQuery())
                     .toString(ToXContent.EMPTY_PARAMS);
             LOGGER.debug("query={}", esQuery);
-            final ResultSet resultSet = session.execute(this.esQueryStmt.bind(esQuery));
-            return resultSet.all().stream().map(this::fromRow).collect(Collectors.toList());
+            return searchRows(esQuery).stream().map(this::fromRow).collect(Collectors.toList());
         } catch (final Exception ex) {
             final String message = "Failed to find GenericNotificationConfig by referenceType="+referenceType+" referenceId="+referenceId;
             LOGGER.error(message, ex);
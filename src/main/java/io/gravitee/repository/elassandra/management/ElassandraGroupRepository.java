@@ -16,11 +16,9 @@
  */
 package io.gravitee.repository.elassandra.management;
 
-
-import static com.datastax.driver.core.querybuilder.QueryBuilder.in;
-
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -30,10 +28,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
 
-import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
-import com.datastax.driver.core.Statement;
-import com.datastax.driver.core.querybuilder.QueryBuilder;
 
 import io.gravitee.repository.exceptions.TechnicalException;
 import io.gravitee.repository.management.api.GroupRepository;
@@ -110,11 +105,7 @@ public class ElassandraGroupRepository extends ElassandraCrud<Group, String> imp
     @Override
     public Set<Group> findByIds(Set<String> ids) throws TechnicalException {
         LOGGER.debug("Find Group by IDs [{}]", ids);
-
-        final Statement select = QueryBuilder.select().all().from(tableName).where(in("id", new ArrayList<>(ids)));
-        final ResultSet resultSet = session.execute(select);
-        List<Row> all = resultSet.all();
-        return all.stream().map(this::fromRow).collect(Collectors.toSet());
+        return new HashSet<>(findAll(new ArrayList<>(ids)));
     }
 
 }
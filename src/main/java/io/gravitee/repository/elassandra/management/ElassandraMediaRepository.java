@@ -101,7 +101,7 @@ public class ElassandraMediaRepository extends ElassandraCrud<Media, String> imp
             t.setFileName(row.getString("file_name"));
             t.setHash(row.getString("hash"));
             t.setSize(row.getLong("size"));
-            t.setData(Bytes.getArray(row.getBytes("data")));
+            t.setData(row.getColumnDefinitions().contains("data") ? Bytes.getArray(row.getBytes("data")) : null);
             t.setApi(row.getString("api"));
             t.setCreatedAt(row.getTimestamp("created_at"));
             return t;
@@ -109,6 +109,13 @@ public class ElassandraMediaRepository extends ElassandraCrud<Media, String> imp
         return null;
     }
 
+    /**
+     * Read a media without its data, e.g. to check its type, size or hash.
+     */
+    public Optional<Media> findByIdWithoutData(String id) throws TechnicalException {
+        return findById(id, columnsExcept("data"));
+    }
+
     @Override
     public String save(Media media) throws TechnicalException {
         media.setCreatedAt(new Date());
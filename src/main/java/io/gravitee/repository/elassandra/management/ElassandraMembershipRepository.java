@@ -164,8 +164,7 @@ public class ElassandraMembershipRepository extends ElassandraCrud<Membership, S
                 .query(queryBuilder)
                 .toString(ToXContent.EMPTY_PARAMS);
         LOGGER.debug("query={}", esQuery);
-        final ResultSet resultSet = session.execute(this.esQueryStmt.bind(esQuery));
-        return resultSet.all().stream().map(this::fromRow).collect(Collectors.toSet());
+        return searchRows(esQuery).stream().map(this::fromRow).collect(Collectors.toSet());
     }
 
     @Override
@@ -185,8 +184,7 @@ public class ElassandraMembershipRepository extends ElassandraCrud<Membership, S
                 .query(queryBuilder)
                 .toString(ToXContent.EMPTY_PARAMS);
         LOGGER.debug("query={}", esQuery);
-        final ResultSet resultSet = session.execute(this.esQueryStmt.bind(esQuery));
-        return resultSet.all().stream().map(this::fromRow).collect(Collectors.toSet());
+        return searchRows(esQuery).stream().map(this::fromRow).collect(Collectors.toSet());
     }
 
     @Override
@@ -202,12 +200,11 @@ public class ElassandraMembershipRepository extends ElassandraCrud<Membership, S
         if (referenceType != null)
             queryBuilder.filter(QueryBuilders.termQuery("reference_type", referenceType));
 
-        String esQuery = new SearchSourceBuilder()
-                .query(queryBuilder)
-                .toString(ToXContent.EMPTY_PARAMS);
-        LOGGER.debug("query={}", esQuery);
-        final ResultSet resultSet = session.execute(this.esQueryStmt.bind(esQuery));
-        return resultSet.all().stream().map(this::fromRow).collect(Collectors.toSet());
+        SearchSourceBuilder esQueryBuilder = new SearchSourceBuilder()
+                .query(queryBuilder);
+        LOGGER.debug("query={}", esQueryBuilder);
+        // unbounded result, scrolled rather than kept in the search cache
+        return scroll(esQueryBuilder).collect(Collectors.toSet());
     }
 
     @Override
@@ -224,8 +221,7 @@ public class ElassandraMembershipRepository extends ElassandraCrud<Membership, S
                 .query(queryBuilder)
                 .toString(ToXContent.EMPTY_PARAMS);
         LOGGER.debug("query={}", esQuery);
-        final ResultSet resultSet = session.execute(this.esQueryStmt.bind(esQuery));
-        return resultSet.all().stream().map(this::fromRow).collect(Collectors.toSet());
+        return searchRows(esQuery).stream().map(this::fromRow).collect(Collectors.toSet());
     }
 
     @Override
@@ -244,8 +240,7 @@ public class ElassandraMembershipRepository extends ElassandraCrud<Membership, S
                 .query(queryBuilder)
                 .toString(ToXContent.EMPTY_PARAMS);
         LOGGER.debug("query={}", esQuery);
-        final ResultSet resultSet = session.execute(this.esQueryStmt.bind(esQuery));
-        return resultSet.all().stream().map(this::fromRow).collect(Collectors.toSet());
+        return searchRows(esQuery).stream().map(this::fromRow).collect(Collectors.toSet());
     }
 
 
@@ -288,8 +283,7 @@ public class ElassandraMembershipRepository extends ElassandraCrud<Membership, S
                 .query(QueryBuilders.termQuery("roles", convertRoleToType(roleScope, roleName)))
                 .toString(ToXContent.EMPTY_PARAMS);
         LOGGER.debug("ElassandraMembershipRepository.query={}", esQuery);
-        final ResultSet resultSet = session.execute(this.esQueryStmt.bind(esQuery));
-        return resultSet.all().stream().map(this::fromRow).collect(Collectors.toSet());
+        return searchRows(esQuery).stream().map(this::fromRow).collect(Collectors.toSet());
     }
 
     @Override
@@ -302,8 +296,7 @@ public class ElassandraMembershipRepository extends ElassandraCrud<Membership, S
             String esQuery = new SearchSourceBuilder()
                     .query(QueryBuilders.termQuery("user_id", userId))
                     .toString(ToXContent.EMPTY_PARAMS);
-            final ResultSet resultSet = session.execute(this.esQueryStmt.bind(esQuery));
-            return resultSet.all().stream().map(this::fromRow).collect(Collectors.toSet());
+            return searchRows(esQuery).stream().map(this::fromRow).collect(Collectors.toSet());
         } catch (final Exception ex) {
             LOGGER.error("Failed to find membership by user ", ex);
             throw new TechnicalException("Failed to find by user ", ex);
@@ -317,7 +310,11 @@ public class ElassandraMembershipRepository extends ElassandraCrud<Membership, S
         if (membership.getUserId() == null || membership.getReferenceType() == null || membership.getReferenceId() == null)
             throw new IllegalStateException("One primary key is null");
         LOGGER.debug("delete({}, {}, {})", membership.getUserId(), membership.getReferenceType().toString(), membership.getReferenceId());
-        session.execute(deleteStmt.bind(membership.getUserId(), membership.getReferenceType().toString(), membership.getReferenceId()));
+        try {
+            session.execute(deleteStmt.bind(membership.getUserId(), membership.getReferenceType().toString(), membership.getReferenceId()));
+        } finally {
+            evict(membership);
+        }
     }
 
     @Override
@@ -19,6 +19,7 @@ package io.gravitee.repository.elassandra.management;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.elasticsearch.common.settings.Settings;
@@ -151,7 +152,7 @@ public class ElassandraPageRepository extends ElassandraCrud<Page, String> imple
             page.setName(row.getString("name"));
             page.setParentId(row.getString("parent_id"));
             page.setType(row.isNull("type") ? null : PageType.valueOf(row.getString("type").toUpperCase()));
-            page.setContent(row.getString("content"));
+            page.setContent(row.getColumnDefinitions().contains("content") ? row.getString("content") : null);
             page.setLastContributor(row.getString("last_contributor"));
             page.setOrder(row.getInt(PAGE_ORDER));
             page.setPublished(row.isNull("published") ? null : row.getBool("published"));
@@ -180,35 +181,33 @@ public class ElassandraPageRepository extends ElassandraCrud<Page, String> imple
     public Integer findMaxPortalPageOrder() throws TechnicalException {
         LOGGER.debug("Find max Portal Pages order");
 
-        String esQuery = new SearchSourceBuilder()
-                .query(new BoolQueryBuilder().mustNot(QueryBuilders.existsQuery("api")))
-                .sort(PAGE_ORDER, SortOrder.DESC)
-                .size(1)
-                .toString(ToXContent.EMPTY_PARAMS);
-        LOGGER.debug("query={}", esQuery);
-
-        final Row row = session.execute(this.esQueryStmt.bind(esQuery)).one();
-        return row == null ? 0 : row.getInt(PAGE_ORDER);
+        return max(PAGE_ORDER, new BoolQueryBuilder().mustNot(QueryBuilders.existsQuery("api"))).map(Double::intValue).orElse(0);
     }
 
     @Override
     public Integer findMaxApiPageOrderByApiId(String apiId) throws TechnicalException {
         LOGGER.debug("Find max Page order by Api ID [{}]", apiId);
 
-        String esQuery = new SearchSourceBuilder()
-                .query(QueryBuilders.termQuery("api", apiId))
-                .sort(PAGE_ORDER, SortOrder.DESC)
-                .size(1)
-                .toString(ToXContent.EMPTY_PARAMS);
-        LOGGER.debug("query={}", esQuery);
-
-        final Row row = session.execute(this.esQueryStmt.bind(esQuery)).one();
-        return row == null ? 0 : row.getInt(PAGE_ORDER);
+        return max(PAGE_ORDER, QueryBuilders.termQuery("api", apiId)).map(Double::intValue).orElse(0);
     }
 
     @Override
     public List<Page> search(PageCriteria criteria) throws TechnicalException {
-        LOGGER.debug("search({})", criteria);
+        return search(criteria, null);
+    }
+
+    /**
+     * Search pages without their content, for page lists.
+     */
+    public List<Page> searchWithoutContent(PageCriteria criteria) throws TechnicalException {
+        return search(criteria, columnsExcept("content"));
+    }
+
+    /**
+     * Search pages reading the given fields only, fromRow only tolerates a missing content.
+     */
+    protected List<Page> search(PageCriteria criteria, Set<String> fields) throws TechnicalException {
+        LOGGER.debug("search({}) fields={}", criteria, fields);
         try {
             BoolQueryBuilder queryBuilder = new BoolQueryBuilder();
             if (criteria != null) {
@@ -242,7 +241,7 @@ public class ElassandraPageRepository extends ElassandraCrud<Page, String> imple
                     .toString(ToXContent.EMPTY_PARAMS);
             LOGGER.debug("query={}", esQuery);
 
-            final ResultSet resultSet = session.execute(this.esQueryStmt.bind(esQuery));
+            final ResultSet resultSet = session.execute(esQueryStmt(fields, false).bind(esQuery));
             return resultSet.all().stream().map(this::fromRow).collect(Collectors.toList());
         } catch (final Exception ex) {
             final String message = "Failed to find portal pages";
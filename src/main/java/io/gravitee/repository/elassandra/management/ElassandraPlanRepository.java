@@ -30,7 +30,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
 
-import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
 
 import io.gravitee.repository.exceptions.TechnicalException;
@@ -177,9 +176,7 @@ public class ElassandraPlanRepository extends ElassandraCrud<Plan, String> imple
                 .query(QueryBuilders.termQuery("apis", api))
                 .toString(ToXContent.EMPTY_PARAMS);
         LOGGER.debug("es_query={}", esQuery);
-        final ResultSet resultSet = session.execute(this.esQueryStmt.bind(esQuery));
-
-        return resultSet.all().stream()
+        return searchRows(esQuery).stream()
                 .map(this::fromRow)
                 .collect(Collectors.toSet());
     }
@@ -21,8 +21,11 @@ import static java.util.Comparator.comparing;
 import static java.util.stream.Collectors.toList;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Map.Entry;
 import java.util.stream.Collectors;
@@ -35,6 +38,7 @@ import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.sort.SortOrder;
 import org.slf4j.Logger;
@@ -123,13 +127,44 @@ public class ElassandraRatingRepository extends ElassandraCrud<Rating, String> i
     @Autowired
     private Session session;
 
-    @Override
-    public Page<Rating> findByApiPageable(String api, Pageable pageable) throws TechnicalException {
-        LOGGER.debug("Find Rating by api [{}] pageable={}", api, pageable);
+    /**
+     * Cursor paging of the ratings of an api, see {@link ElassandraCrud#searchAfter(SearchSourceBuilder, int, String)}.
+     */
+    public CursorPage<Rating> findByApi(String api, int pageSize, String cursor) throws TechnicalException {
+        LOGGER.debug("Find Rating by api [{}] cursor [{}]", api, cursor);
+        return searchAfter(searchSource(api), pageSize, cursor);
+    }
 
+    /**
+     * @return the average rate of each of the apis, or of all the apis when none is given.
+     */
+    public Map<String, Double> averageByApi(Collection<String> apis) throws TechnicalException {
+        LOGGER.debug("Average Rating by api {}", apis);
         SearchSourceBuilder esQueryBuilder = new SearchSourceBuilder()
+                .query(apis == null || apis.isEmpty() ? QueryBuilders.matchAllQuery() : QueryBuilders.termsQuery("api", apis))
+                .size(0)
+                .aggregation(AggregationBuilders.terms("api").field("api").size(AGGREGATION_BUCKETS)
+                        .subAggregation(AggregationBuilders.avg("rate").field("rate")));
+        final Map<String, Double> averages = new LinkedHashMap<>();
+        for(Map<String, Object> row : aggregations(esQueryBuilder)) {
+            Number rate = metric(row, "api.rate");
+            if (rate != null)
+                averages.put((String) bucketKey(row, "api"), rate.doubleValue());
+        }
+        return averages;
+    }
+
+    private SearchSourceBuilder searchSource(final String api) {
+        return new SearchSourceBuilder()
                 .query(api == null ? QueryBuilders.matchAllQuery() : QueryBuilders.termQuery("api", api))
                 .sort("created_at",SortOrder.DESC);
+    }
+
+    @Override
+    public Page<Rating> findByApiPageable(String api, Pageable pageable) throws TechnicalException {
+        LOGGER.debug("Find Rating by api [{}] pageable={}", api, pageable);
+
+        SearchSourceBuilder esQueryBuilder = searchSource(api);
 
         int pageSize = 1000;
         if (pageable != null) {
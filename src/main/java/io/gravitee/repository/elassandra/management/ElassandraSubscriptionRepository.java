@@ -21,7 +21,9 @@ import static org.springframework.util.CollectionUtils.isEmpty;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -32,6 +34,7 @@ import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.sort.SortOrder;
 import org.slf4j.Logger;
@@ -163,8 +166,7 @@ public class ElassandraSubscriptionRepository extends ElassandraCrud<Subscriptio
         String esQuery = new SearchSourceBuilder()
                 .query(QueryBuilders.termQuery("plan", plan))
                 .toString(ToXContent.EMPTY_PARAMS);
-        return session.execute(this.esQueryStmt.bind(esQuery)).all()
-                .stream().map(this::fromRow).collect(Collectors.toSet());
+        return searchStream(esQuery).collect(Collectors.toSet());
     }
 
     public Set<Subscription> findByApplication(String application) throws TechnicalException {
@@ -172,8 +174,7 @@ public class ElassandraSubscriptionRepository extends ElassandraCrud<Subscriptio
         String esQuery = new SearchSourceBuilder()
                 .query(QueryBuilders.termQuery("application", application))
                 .toString(ToXContent.EMPTY_PARAMS);
-        return session.execute(this.esQueryStmt.bind(esQuery)).all()
-                .stream().map(this::fromRow).collect(Collectors.toSet());
+        return searchStream(esQuery).collect(Collectors.toSet());
     }
 
     @Override
@@ -186,7 +187,49 @@ public class ElassandraSubscriptionRepository extends ElassandraCrud<Subscriptio
         return searchPage(criteria, null).getContent();
     }
 
-    private Page<Subscription> searchPage(final SubscriptionCriteria criteria, final Pageable pageable) {
+    /**
+     * Cursor paging of the subscriptions, see {@link ElassandraCrud#searchAfter(SearchSourceBuilder, int, String)}.
+     */
+    public CursorPage<Subscription> search(SubscriptionCriteria criteria, int pageSize, String cursor) throws TechnicalException {
+        LOGGER.debug("Search Subscription criteria={} cursor={}", criteria, cursor);
+        return searchAfter(searchSource(criteria), pageSize, cursor);
+    }
+
+    /**
+     * @return the number of subscriptions matching the criteria by api, then by status.
+     */
+    public Map<String, Map<String, Long>> countByApiAndStatus(SubscriptionCriteria criteria) throws TechnicalException {
+        LOGGER.debug("Count Subscription by api and status criteria={}", criteria);
+        SearchSourceBuilder esQueryBuilder = searchSource(criteria)
+                .size(0)
+                .aggregation(AggregationBuilders.terms("api").field("api").size(AGGREGATION_BUCKETS)
+                        .subAggregation(AggregationBuilders.terms("status").field("status")));
+        final Map<String, Map<String, Long>> counts = new LinkedHashMap<>();
+        for(Map<String, Object> row : aggregations(esQueryBuilder))
+            counts.computeIfAbsent((String) bucketKey(row, "api"), api -> new LinkedHashMap<>())
+                    .put((String) bucketKey(row, "api.status"), bucketCount(row, "api.status"));
+        return counts;
+    }
+
+    /**
+     * @return the approximate number of distinct applications subscribed to each api, for the subscriptions
+     * matching the criteria.
+     */
+    public Map<String, Long> countApplicationsByApi(SubscriptionCriteria criteria) throws TechnicalException {
+        LOGGER.debug("Count Subscription applications by api criteria={}", criteria);
+        SearchSourceBuilder esQueryBuilder = searchSource(criteria)
+                .size(0)
+                .aggregation(AggregationBuilders.terms("api").field("api").size(AGGREGATION_BUCKETS)
+                        .subAggregation(AggregationBuilders.cardinality("applications").field("application")));
+        final Map<String, Long> counts = new LinkedHashMap<>();
+        for(Map<String, Object> row : aggregations(esQueryBuilder)) {
+            Number applications = metric(row, "api.applications");
+            counts.put((String) bucketKey(row, "api"), applications == null ? 0L : applications.longValue());
+        }
+        return counts;
+    }
+
+    private SearchSourceBuilder searchSource(final SubscriptionCriteria criteria) {
         BoolQueryBuilder queryBuilder = new BoolQueryBuilder();
         if (criteria != null) {
             if (criteria.getFrom() > 0 || criteria.getTo() > 0) {
@@ -216,9 +259,13 @@ public class ElassandraSubscriptionRepository extends ElassandraCrud<Subscriptio
             }
         }
 
-        SearchSourceBuilder esQueryBuilder = new SearchSourceBuilder()
+        return new SearchSourceBuilder()
                 .query(queryBuilder.hasClauses() ? queryBuilder : QueryBuilders.matchAllQuery())
                 .sort("created_at", SortOrder.DESC);
+    }
+
+    private Page<Subscription> searchPage(final SubscriptionCriteria criteria, final Pageable pageable) {
+        SearchSourceBuilder esQueryBuilder = searchSource(criteria);
 
         int pageSize = 1000;
         if (pageable != null) {
@@ -16,11 +16,9 @@
  */
 package io.gravitee.repository.elassandra.management;
 
-
-import static com.datastax.driver.core.querybuilder.QueryBuilder.in;
-
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -40,7 +38,6 @@ import org.springframework.stereotype.Repository;
 
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
-import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 
 import io.gravitee.common.data.domain.Page;
@@ -122,7 +119,7 @@ public class ElassandraUserRepository extends ElassandraCrud<User, String> imple
             t.setCreatedAt(row.getTimestamp("created_at"));
             t.setUpdatedAt(row.getTimestamp("updated_at"));
             t.setLastConnectionAt(row.getTimestamp("last_connection_at"));
-            t.setPicture(row.getString("picture"));
+            t.setPicture(row.getColumnDefinitions().contains("picture") ? row.getString("picture") : null);
             t.setStatus(row.getString("status") == null ? null : UserStatus.valueOf(row.getString("status")));
             return t;
         }
@@ -134,20 +131,7 @@ public class ElassandraUserRepository extends ElassandraCrud<User, String> imple
     @Override
     public Set<User> findByIds(List<String> ids) throws TechnicalException {
         LOGGER.debug("Find User by Username list {}", ids);
-
-        final String[] lastId = new String[1];
-        List<String> uniqueIds = ids.stream().filter(id -> {
-            if (id.equals(lastId[0])) {
-                return false;
-            } else {
-                lastId[0] = id;
-                return true;
-            }
-        }).collect(Collectors.toList());
-
-        final Statement select = QueryBuilder.select().all().from(tableName).where(in("id", uniqueIds));
-        final ResultSet resultSet = session.execute(select);
-        return resultSet.all().stream().map(this::fromRow).collect(Collectors.toSet());
+        return new HashSet<>(findAll(ids));
     }
 
     @Override
@@ -166,26 +150,52 @@ public class ElassandraUserRepository extends ElassandraCrud<User, String> imple
         return Optional.ofNullable(fromRow(row));
     }
 
+    /**
+     * Cursor paging of the users, see {@link ElassandraCrud#searchAfter(SearchSourceBuilder, int, String)}.
+     */
+    public CursorPage<User> search(UserCriteria criteria, int pageSize, String cursor) throws TechnicalException {
+        LOGGER.debug("Search User by criteria [{}] cursor [{}]", criteria, cursor);
+        return searchAfter(searchSource(criteria), pageSize, cursor);
+    }
+
+    private SearchSourceBuilder searchSource(final UserCriteria criteria) {
+        BoolQueryBuilder queryBuilder = new BoolQueryBuilder();
+        if (criteria != null) {
+            if (criteria.getStatuses() != null && criteria.getStatuses().length > 0) {
+                List<UserStatus> statuses = Arrays.asList(criteria.getStatuses());
+                queryBuilder.filter(QueryBuilders.termsQuery("status",
+                        statuses.stream().map(UserStatus::name).collect(Collectors.toList())));
+            }
+            if (criteria.hasNoStatus()) {
+                queryBuilder.mustNot(QueryBuilders.existsQuery("status"));
+            }
+        }
+
+        return new SearchSourceBuilder()
+                .query(queryBuilder.hasClauses() ? queryBuilder : QueryBuilders.matchAllQuery())
+                .sort("lastname", SortOrder.ASC)
+                .sort("firstname", SortOrder.ASC);
+    }
+
     @Override
     public Page<User> search(UserCriteria criteria, Pageable pageable) throws TechnicalException {
-        LOGGER.debug("Search User by criteria [{}]", criteria);
-        try {
-            BoolQueryBuilder queryBuilder = new BoolQueryBuilder();
-            if (criteria != null) {
-                if (criteria.getStatuses() != null && criteria.getStatuses().length > 0) {
-                    List<UserStatus> statuses = Arrays.asList(criteria.getStatuses());
-                    queryBuilder.filter(QueryBuilders.termsQuery("status",
-                            statuses.stream().map(UserStatus::name).collect(Collectors.toList())));
-                }
-                if (criteria.hasNoStatus()) {
-                    queryBuilder.mustNot(QueryBuilders.existsQuery("status"));
-                }
-            }
+        return search(criteria, pageable, null);
+    }
 
-            SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder()
-                    .query(queryBuilder.hasClauses() ? queryBuilder : QueryBuilders.matchAllQuery())
-                    .sort("lastname", SortOrder.ASC)
-                    .sort("firstname", SortOrder.ASC);
+    /**
+     * Search users without their picture, for user lists.
+     */
+    public Page<User> searchWithoutPicture(UserCriteria criteria, Pageable pageable) throws TechnicalException {
+        return search(criteria, pageable, columnsExcept("picture"));
+    }
+
+    /**
+     * Search users reading the given fields only, fromRow only tolerates a missing picture.
+     */
+    protected Page<User> search(UserCriteria criteria, Pageable pageable, Set<String> fields) throws TechnicalException {
+        LOGGER.debug("Search User by criteria [{}] fields {}", criteria, fields);
+        try {
+            SearchSourceBuilder searchSourceBuilder = searchSource(criteria);
 
             int pageSize = 1000;
             if (pageable != null) {
@@ -199,7 +209,7 @@ public class ElassandraUserRepository extends ElassandraCrud<User, String> imple
             String esQuery = searchSourceBuilder.toString(ToXContent.EMPTY_PARAMS);
             LOGGER.debug("es_query={}", esQuery);
 
-            final ResultSet resultSet = session.execute(this.esQueryStmt.bind(esQuery));
+            final ResultSet resultSet = session.execute(esQueryStmt(fields, false).bind(esQuery));
             ElasticIncomingPayload payload = new ElasticIncomingPayload(resultSet.getExecutionInfo().getIncomingPayload());
             List<User> result = resultSet.all().stream().map(this::fromRow).collect(Collectors.toList());
             return new Page<>(result,
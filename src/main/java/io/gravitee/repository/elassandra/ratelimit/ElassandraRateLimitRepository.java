@@ -20,27 +20,52 @@ import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.gte;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import io.reactivex.Single;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.Configuration;
+import com.datastax.driver.core.Host;
 import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
+import io.gravitee.repository.elassandra.common.AbstractElassandraRepositoryConfiguration.ExecutionProfiles.Operation;
+import io.gravitee.repository.elassandra.common.ListenableFutures;
 import io.gravitee.repository.elassandra.management.ElassandraCrud;
+import io.gravitee.repository.elassandra.ratelimit.RateLimitRepositoryConfiguration.Mode;
+import io.gravitee.repository.elassandra.ratelimit.RateLimitRepositoryConfiguration.RateLimitConfig;
 import io.gravitee.repository.exceptions.TechnicalException;
 import io.gravitee.repository.ratelimit.api.RateLimitRepository;
 import io.gravitee.repository.ratelimit.model.RateLimit;
@@ -56,7 +81,40 @@ public class ElassandraRateLimitRepository extends ElassandraCrud<RateLimit, Str
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ElassandraRateLimitRepository.class);
 
+    /**
+     * Single-row partition table used by the {@link Mode#CAS} mode.
+     */
+    public static final String CAS_TABLE_NAME = "ratelimits_cas";
+
+    /**
+     * One row per window table used by the {@link Mode#TIME_WINDOW} mode.
+     */
+    public static final String TIME_WINDOW_TABLE_NAME = "ratelimits_tw";
+
+    private static final long DAY_MILLIS = 24 * 3600 * 1000L;
+
+    @Autowired
+    protected RateLimitConfig rateLimitConfig;
+
     protected PreparedStatement insertStmtUsingTtl;
+    protected PreparedStatement selectLatestStmt;
+
+    protected RateLimitAccumulator accumulator;
+    protected RateLimitFallback fallback;
+
+    protected PreparedStatement casSelectStmt;
+    protected PreparedStatement casInsertStmt;
+    protected PreparedStatement casIncrementStmt;
+    protected PreparedStatement casResetStmt;
+
+    protected PreparedStatement twSelectStmt;
+    protected PreparedStatement twInsertStmt;
+    protected PreparedStatement twInsertStmtUsingTtl;
+    protected PreparedStatement twIncrementStmt;
+    protected PreparedStatement twIncrementStmtUsingTtl;
+
+    // spreads gateway nodes over the shards of a hot key.
+    private final int shardSeed = new Random().nextInt(Integer.MAX_VALUE);
 
     public ElassandraRateLimitRepository() throws IOException {
         super("ratelimits",
@@ -68,24 +126,352 @@ public class ElassandraRateLimitRepository extends ElassandraCrud<RateLimit, Str
 
     @Override
     public Single<RateLimit> incrementAndGet(String key, long weight, Supplier<RateLimit> supplier) {
-        return Single.fromFuture(session.executeAsync(selectStmt.bind(key)))
-                .map((resultSet) -> {
-                    RateLimit rateLimit = null;
-                    Row row = resultSet.one();
-                    if (row == null) {
-                        rateLimit = create(supplier.get());
-                    } else {
-                        rateLimit = fromRow(row);
-                        rateLimit.setCounter(rateLimit.getCounter() + weight);
-                        rateLimit = create(rateLimit);
-                    }
-                    return rateLimit;
-                });
+        return Single.defer(() -> ListenableFutures.toSingle(incrementAndGetAsync(key, weight, supplier)));
+    }
+
+    /**
+     * Chain asynchronous statements only, callbacks run on the driver I/O threads and must never block.
+     */
+    protected ListenableFuture<RateLimit> incrementAndGetAsync(String key, long weight, Supplier<RateLimit> supplier) {
+        if (fallback != null)
+            return fallback.incrementAndGet(key, weight, supplier);
+        return accumulateOrStore(key, weight, supplier);
+    }
+
+    protected ListenableFuture<RateLimit> accumulateOrStore(String key, long weight, Supplier<RateLimit> supplier) {
+        if (accumulator != null)
+            return accumulator.incrementAndGet(key, weight, supplier);
+        return store(key, weight, supplier);
+    }
+
+    /**
+     * Increment the rate limit stored in Elassandra, on one of its shards when the key matches a sharding rule.
+     */
+    protected ListenableFuture<RateLimit> store(String key, long weight, Supplier<RateLimit> supplier) {
+        int shards = rateLimitConfig.getShards(key);
+        if (shards > 1)
+            return storeSharded(key, shards, weight, supplier);
+        return storeShard(key, weight, supplier);
+    }
+
+    protected ListenableFuture<RateLimit> storeShard(String key, long weight, Supplier<RateLimit> supplier) {
+        if (rateLimitConfig.getMode() == Mode.UPSERT)
+            return upsert(key, weight, supplier);
+        return compareAndSet(key, weight, supplier, 0);
+    }
+
+    /**
+     * Increment the shard of a hot key owned by the current gateway thread, and read the other shards in parallel
+     * to sum the counters of their current windows. Shards are stored as key#shard in distinct partitions,
+     * so the writes of a hot key are spread over several replica sets. Each shard starts its own window, so the
+     * total is approximate at window boundaries.
+     */
+    protected ListenableFuture<RateLimit> storeSharded(String key, int shards, long weight, Supplier<RateLimit> supplier) {
+        final int shard = Math.floorMod(shardSeed + (int) Thread.currentThread().getId(), shards);
+        final ListenableFuture<RateLimit> own = storeShard(shardKey(key, shard), weight, () -> {
+            RateLimit rateLimit = supplier.get();
+            RateLimit shardRateLimit = new RateLimit(shardKey(key, shard));
+            // the initial counter is accounted once, on the first shard.
+            shardRateLimit.setCounter(shard == 0 ? rateLimit.getCounter() : 0);
+            shardRateLimit.setResetTime(rateLimit.getResetTime());
+            shardRateLimit.setLimit(rateLimit.getLimit());
+            shardRateLimit.setSubscription(rateLimit.getSubscription());
+            return shardRateLimit;
+        });
+        final List<ListenableFuture<ResultSet>> others = new ArrayList<>(shards - 1);
+        for(int i = 0; i < shards; i++)
+            if (i != shard)
+                others.add(session.executeAsync(profiled(currentTableName(), Operation.READ, selectCurrentStmt().bind(shardKey(key, i)))));
+
+        return Futures.transformAsync(own, shardRateLimit -> Futures.transform(Futures.allAsList(others), (Function<List<ResultSet>, RateLimit>) resultSets -> {
+            final long now = System.currentTimeMillis();
+            final RateLimit rateLimit = new RateLimit(key);
+            long counter = shardRateLimit.getCounter();
+            for(ResultSet resultSet : resultSets) {
+                RateLimit other = fromRow(resultSet.one());
+                if (other != null && other.getResetTime() > now)
+                    counter += other.getCounter();
+            }
+            rateLimit.setCounter(counter);
+            rateLimit.setResetTime(shardRateLimit.getResetTime());
+            rateLimit.setLimit(shardRateLimit.getLimit());
+            rateLimit.setSubscription(shardRateLimit.getSubscription());
+            return rateLimit;
+        }, MoreExecutors.directExecutor()), MoreExecutors.directExecutor());
+    }
+
+    protected static String shardKey(String key, int shard) {
+        return key + "#" + shard;
+    }
+
+    /**
+     * @return statement selecting the current window of a key in the configured mode.
+     */
+    protected PreparedStatement selectCurrentStmt() {
+        switch (rateLimitConfig.getMode()) {
+            case CAS:
+                return casSelectStmt;
+            case TIME_WINDOW:
+                return twSelectStmt;
+            default:
+                return selectLatestStmt;
+        }
+    }
+
+    /**
+     * @return table of the current window of a key in the configured mode, to resolve its execution profiles.
+     */
+    protected String currentTableName() {
+        switch (rateLimitConfig.getMode()) {
+            case CAS:
+                return CAS_TABLE_NAME;
+            case TIME_WINDOW:
+                return TIME_WINDOW_TABLE_NAME;
+            default:
+                return tableName;
+        }
+    }
+
+    /**
+     * Read the latest row, increment in the JVM and insert the new value (last write wins).
+     */
+    protected ListenableFuture<RateLimit> upsert(String key, long weight, Supplier<RateLimit> supplier) {
+        return Futures.transformAsync(session.executeAsync(profiled(Operation.READ, selectLatestStmt.bind(key))), resultSet -> {
+            final RateLimit rateLimit = next(fromRow(resultSet.one()), weight, supplier);
+            return Futures.transform(session.executeAsync(profiled(Operation.WRITE, insertStmtUsingTtl.bind(valuesUsingTtl(rateLimit)))),
+                    (Function<ResultSet, RateLimit>) rs -> rateLimit, MoreExecutors.directExecutor());
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Increment several rate limits, such as the rate limit and quota keys of a gateway request, with a single completion.
+     * Increments of the same key are merged into one. In upsert mode, all reads are sent in parallel, then inserts are
+     * grouped by replica set into unlogged batches, so the latency is about one read and one write round trip whatever
+     * the number of keys. Other modes fan out their increments in parallel.
+     *
+     * @return rate limits in the order of the increments
+     */
+    public Single<List<RateLimit>> incrementAndGet(List<RateLimitIncrement> increments) {
+        return Single.defer(() -> ListenableFutures.toSingle(incrementAndGetAsync(increments)));
+    }
+
+    protected ListenableFuture<List<RateLimit>> incrementAndGetAsync(List<RateLimitIncrement> increments) {
+        final Map<String, RateLimitIncrement> merged = new LinkedHashMap<>();
+        for(RateLimitIncrement increment : increments)
+            merged.merge(increment.getKey(), increment, (a, b) -> new RateLimitIncrement(a.getKey(), a.getWeight() + b.getWeight(), a.getSupplier()));
+        final List<String> keys = new ArrayList<>(merged.keySet());
+
+        final ListenableFuture<List<RateLimit>> future;
+        if (accumulator == null && fallback == null && rateLimitConfig.getMode() == Mode.UPSERT && !rateLimitConfig.isSharded()) {
+            future = upsert(new ArrayList<>(merged.values()));
+        } else {
+            List<ListenableFuture<RateLimit>> futures = new ArrayList<>(merged.size());
+            for(RateLimitIncrement increment : merged.values())
+                futures.add(incrementAndGetAsync(increment.getKey(), increment.getWeight(), increment.getSupplier()));
+            future = Futures.allAsList(futures);
+        }
+        return Futures.transform(future, (Function<List<RateLimit>, List<RateLimit>>) rateLimits -> {
+            Map<String, RateLimit> rateLimitByKey = new HashMap<>();
+            for(int i = 0; i < keys.size(); i++)
+                rateLimitByKey.put(keys.get(i), rateLimits.get(i));
+            return increments.stream().map(increment -> rateLimitByKey.get(increment.getKey())).collect(Collectors.toList());
+        }, MoreExecutors.directExecutor());
+    }
+
+    protected ListenableFuture<List<RateLimit>> upsert(List<RateLimitIncrement> increments) {
+        List<ListenableFuture<ResultSet>> reads = new ArrayList<>(increments.size());
+        for(RateLimitIncrement increment : increments)
+            reads.add(session.executeAsync(profiled(Operation.READ, selectLatestStmt.bind(increment.getKey()))));
+
+        return Futures.transformAsync(Futures.allAsList(reads), resultSets -> {
+            final List<RateLimit> rateLimits = new ArrayList<>(increments.size());
+            final Map<Set<Host>, BatchStatement> batches = new HashMap<>();
+            for(int i = 0; i < increments.size(); i++) {
+                RateLimitIncrement increment = increments.get(i);
+                RateLimit rateLimit = next(fromRow(resultSets.get(i).one()), increment.getWeight(), increment.getSupplier());
+                rateLimits.add(rateLimit);
+                BoundStatement insert = insertStmtUsingTtl.bind(valuesUsingTtl(rateLimit));
+                batches.computeIfAbsent(replicas(insert), k -> new BatchStatement(BatchStatement.Type.UNLOGGED)).add(insert);
+            }
+            List<ListenableFuture<ResultSet>> writes = new ArrayList<>(batches.size());
+            for(BatchStatement batch : batches.values())
+                writes.add(session.executeAsync(profiled(Operation.WRITE, batch.size() == 1 ? batch.getStatements().iterator().next() : batch)));
+            return Futures.transform(Futures.allAsList(writes),
+                    (Function<List<ResultSet>, List<RateLimit>>) rs -> rateLimits, MoreExecutors.directExecutor());
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * @return replicas owning the partition of the statement, as used by the token aware load balancing policy.
+     */
+    protected Set<Host> replicas(Statement statement) {
+        Configuration configuration = session.getCluster().getConfiguration();
+        ByteBuffer routingKey = statement.getRoutingKey(configuration.getProtocolOptions().getProtocolVersion(), configuration.getCodecRegistry());
+        if (routingKey == null)
+            return Collections.emptySet();
+        return session.getCluster().getMetadata().getReplicas(session.getLoggedKeyspace(), routingKey);
+    }
+
+    /**
+     * Increment the counter with a lightweight transaction conditioned on the previously read counter and reset time.
+     * Without contention, this costs one read and one conditional write. When another gateway wins the race,
+     * the row is read again and the increment retried, so no update is lost.
+     * In {@link Mode#TIME_WINDOW} mode, the current window is the first row of the partition.
+     */
+    protected ListenableFuture<RateLimit> compareAndSet(String key, long weight, Supplier<RateLimit> supplier, int attempt) {
+        if (attempt >= rateLimitConfig.getCasMaxRetries())
+            return tooManyAttempts(key, attempt);
+        return Futures.transformAsync(session.executeAsync(profiled(currentTableName(), Operation.READ, selectCurrentStmt().bind(key))),
+                resultSet -> compareAndSet(key, weight, supplier, attempt, fromRow(resultSet.one())), MoreExecutors.directExecutor());
+    }
+
+    private ListenableFuture<RateLimit> compareAndSet(String key, long weight, Supplier<RateLimit> supplier, int attempt, RateLimit current) {
+        final RateLimit next = next(current, weight, supplier);
+        final boolean newWindow = current == null || current.getResetTime() != next.getResetTime();
+        return Futures.transformAsync(session.executeAsync(profiled(currentTableName(), Operation.WRITE, casStatement(current, next))), casResult -> {
+            if (casResult.wasApplied())
+                return Futures.immediateFuture(next);
+            LOGGER.debug("CAS conflict on key={} attempt={}", key, attempt);
+            if (rateLimitConfig.getMode() == Mode.TIME_WINDOW && newWindow) {
+                // another gateway started the same window, the failed IF NOT EXISTS returns its row: increment it.
+                final RateLimit started = fromRow(casResult.one());
+                if (started != null) {
+                    if (attempt + 1 >= rateLimitConfig.getCasMaxRetries())
+                        return tooManyAttempts(key, attempt + 1);
+                    return compareAndSet(key, weight, supplier, attempt + 1, started);
+                }
+            }
+            return compareAndSet(key, weight, supplier, attempt + 1);
+        }, MoreExecutors.directExecutor());
+    }
+
+    private ListenableFuture<RateLimit> tooManyAttempts(String key, int attempt) {
+        String message = String.format(Locale.ROOT, "Failed to increment table=%s key=%s after %d attempts",
+                rateLimitConfig.getMode() == Mode.TIME_WINDOW ? TIME_WINDOW_TABLE_NAME : CAS_TABLE_NAME, key, attempt);
+        LOGGER.error(message);
+        return Futures.immediateFailedFuture(new TechnicalException(message));
+    }
+
+    /**
+     * Next value of a rate limit in every mode: a missing or expired rate limit starts a new window initialized
+     * from the supplier, including the weight.
+     */
+    protected RateLimit next(RateLimit current, long weight, Supplier<RateLimit> supplier) {
+        final RateLimit next;
+        final long now = System.currentTimeMillis();
+        if (current == null || current.getResetTime() <= now) {
+            next = supplier.get();
+            next.setCounter(next.getCounter() + weight);
+            if (rateLimitConfig.getMode() == Mode.TIME_WINDOW)
+                next.setResetTime(alignedResetTime(next.getResetTime(), now));
+        } else {
+            next = new RateLimit(current.getKey());
+            next.setCounter(current.getCounter() + weight);
+            next.setResetTime(current.getResetTime());
+            next.setLimit(current.getLimit());
+            next.setSubscription(current.getSubscription());
+        }
+        return next;
+    }
+
+    /**
+     * In {@link Mode#TIME_WINDOW} mode, windows of a period dividing a day are aligned on the period boundary nearest
+     * to the supplied reset time, so that gateways starting the same window compute the same reset time and their
+     * inserts collide on the same clustering row. A window first hit near a boundary lasts between half and one and
+     * a half period, never a few milliseconds. Other periods (e.g. quotas in months) keep the supplied reset time.
+     * The period is the duration from now to the supplied reset time, rounded to the second.
+     */
+    protected static long alignedResetTime(long resetTime, long now) {
+        final long period = Math.max(1000, Math.round((resetTime - now) / 1000.0d) * 1000);
+        if (DAY_MILLIS % period != 0)
+            return resetTime;
+        return (resetTime + period / 2) / period * period;
+    }
+
+    protected Statement casStatement(RateLimit current, RateLimit next) {
+        if (rateLimitConfig.getMode() == Mode.TIME_WINDOW)
+            return timeWindowStatement(current, next);
+        if (current == null)
+            return casInsertStmt.bind(valuesUsingTtl(next));
+        if (current.getResetTime() != next.getResetTime())
+            return casResetStmt.bind(ttl(next), next.getCounter(), new Date(next.getResetTime()), next.getLimit(), next.getSubscription(),
+                    current.getKey(), new Date(current.getResetTime()));
+        return casIncrementStmt.bind(ttl(next), next.getCounter(), current.getKey(), current.getCounter(), new Date(current.getResetTime()));
+    }
+
+    /**
+     * A new window is a new clustering row, never an overwrite. Windows fitting in the table default TTL
+     * are written without TTL, longer ones (e.g. quotas) need an explicit TTL.
+     */
+    protected Statement timeWindowStatement(RateLimit current, RateLimit next) {
+        int ttl = ttl(next);
+        boolean usingTtl = ttl > rateLimitConfig.getTimeWindowDefaultTtlSeconds();
+        if (current == null || current.getResetTime() != next.getResetTime())
+            return usingTtl ? twInsertStmtUsingTtl.bind(valuesUsingTtl(next)) : twInsertStmt.bind(values(next));
+        return usingTtl
+                ? twIncrementStmtUsingTtl.bind(ttl, next.getCounter(), current.getKey(), new Date(current.getResetTime()), current.getCounter())
+                : twIncrementStmt.bind(next.getCounter(), current.getKey(), new Date(current.getResetTime()), current.getCounter());
     }
 
     @PostConstruct
     public void initStmt() {
-        insertStmtUsingTtl = session.prepare(String.format(Locale.ROOT,"INSERT INTO %s (%s) VALUES (%s) USING TTL ?", tableName, buildProjectionClause(), buildMarksClause()));
+        insertStmtUsingTtl = prepare(Operation.WRITE, String.format(Locale.ROOT,"INSERT INTO %s (%s) VALUES (%s) USING TTL ?", tableName, buildProjectionClause(), buildMarksClause()));
+        // clustering order is counter DESC, the first row is the latest one.
+        selectLatestStmt = prepare(Operation.READ, String.format(Locale.ROOT,"SELECT %s FROM %s WHERE id = ? LIMIT 1", buildProjectionClause(), tableName));
+
+        LOGGER.info("Rate limit settings {}", rateLimitConfig);
+        if (rateLimitConfig.getMode() == Mode.CAS) {
+            session.execute(String.format(Locale.ROOT,"CREATE TABLE IF NOT EXISTS %s (%s, PRIMARY KEY (id))", CAS_TABLE_NAME, buildCreateClause()));
+            casSelectStmt = prepare(CAS_TABLE_NAME, Operation.READ, String.format(Locale.ROOT,"SELECT %s FROM %s WHERE id = ?", buildProjectionClause(), CAS_TABLE_NAME));
+            casInsertStmt = prepare(CAS_TABLE_NAME, Operation.WRITE, String.format(Locale.ROOT,"INSERT INTO %s (%s) VALUES (%s) IF NOT EXISTS USING TTL ?", CAS_TABLE_NAME, buildProjectionClause(), buildMarksClause()));
+            casIncrementStmt = prepare(CAS_TABLE_NAME, Operation.WRITE, String.format(Locale.ROOT,"UPDATE %s USING TTL ? SET counter = ? WHERE id = ? IF counter = ? AND reset_time = ?", CAS_TABLE_NAME));
+            casResetStmt = prepare(CAS_TABLE_NAME, Operation.WRITE, String.format(Locale.ROOT,"UPDATE %s USING TTL ? SET counter = ?, reset_time = ?, rate_limit = ?, subscription = ? WHERE id = ? IF reset_time = ?", CAS_TABLE_NAME));
+        }
+        if (rateLimitConfig.getMode() == Mode.TIME_WINDOW) {
+            session.execute(String.format(Locale.ROOT,"CREATE TABLE IF NOT EXISTS %s (%s, PRIMARY KEY ((id), reset_time)) WITH CLUSTERING ORDER BY (reset_time DESC)"
+                    + " AND compaction = {'class': 'TimeWindowCompactionStrategy', 'compaction_window_unit': 'MINUTES', 'compaction_window_size': %d}"
+                    + " AND default_time_to_live = %d AND gc_grace_seconds = %d",
+                    TIME_WINDOW_TABLE_NAME, buildCreateClause(), rateLimitConfig.getTimeWindowCompactionWindowMinutes(),
+                    rateLimitConfig.getTimeWindowDefaultTtlSeconds(), rateLimitConfig.getTimeWindowGcGraceSeconds()));
+            twSelectStmt = prepare(TIME_WINDOW_TABLE_NAME, Operation.READ, String.format(Locale.ROOT,"SELECT %s FROM %s WHERE id = ? LIMIT 1", buildProjectionClause(), TIME_WINDOW_TABLE_NAME));
+            twInsertStmt = prepare(TIME_WINDOW_TABLE_NAME, Operation.WRITE, String.format(Locale.ROOT,"INSERT INTO %s (%s) VALUES (%s) IF NOT EXISTS", TIME_WINDOW_TABLE_NAME, buildProjectionClause(), buildMarksClause()));
+            twInsertStmtUsingTtl = prepare(TIME_WINDOW_TABLE_NAME, Operation.WRITE, String.format(Locale.ROOT,"INSERT INTO %s (%s) VALUES (%s) IF NOT EXISTS USING TTL ?", TIME_WINDOW_TABLE_NAME, buildProjectionClause(), buildMarksClause()));
+            twIncrementStmt = prepare(TIME_WINDOW_TABLE_NAME, Operation.WRITE, String.format(Locale.ROOT,"UPDATE %s SET counter = ? WHERE id = ? AND reset_time = ? IF counter = ?", TIME_WINDOW_TABLE_NAME));
+            twIncrementStmtUsingTtl = prepare(TIME_WINDOW_TABLE_NAME, Operation.WRITE, String.format(Locale.ROOT,"UPDATE %s USING TTL ? SET counter = ? WHERE id = ? AND reset_time = ? IF counter = ?", TIME_WINDOW_TABLE_NAME));
+        }
+        if (rateLimitConfig.isWriteBehind())
+            accumulator = new RateLimitAccumulator(this::store, rateLimitConfig.getWriteBehindFlushIntervalMillis(), rateLimitConfig.getWriteBehindFlushThreshold());
+        if (rateLimitConfig.isFallback())
+            fallback = new RateLimitFallback(this::accumulateOrStore, rateLimitConfig.getFallbackLatencyBudgetMillis(),
+                    rateLimitConfig.getFallbackFailureThreshold(), rateLimitConfig.getFallbackOpenMillis());
+    }
+
+    @PreDestroy
+    public void close() {
+        if (fallback != null)
+            fallback.close();
+        if (accumulator != null)
+            accumulator.close();
+    }
+
+    /**
+     * @return rate limit values followed by its TTL
+     */
+    protected Object[] valuesUsingTtl(RateLimit rateLimit) {
+        Object[] values = values(rateLimit);
+        Object[] valuesUsingTtl = new Object[values.length+1];
+        System.arraycopy(values,  0,  valuesUsingTtl,  0, values.length);
+        valuesUsingTtl[values.length] = ttl(rateLimit);
+        return valuesUsingTtl;
+    }
+
+    /**
+     * @return TTL in seconds = resetTime - currentTime + 10s
+     */
+    protected int ttl(RateLimit rateLimit) {
+        long ttl = ((rateLimit.getResetTime() - System.currentTimeMillis()) / 1000) + 10;
+        assert ttl > 0 : "ratelimits ttl is negative";
+        return (int) Math.max(1, ttl);
     }
 
     @Override
@@ -123,14 +509,8 @@ public class ElassandraRateLimitRepository extends ElassandraCrud<RateLimit, Str
             if (pkCols[i] == null)
                 throw new IllegalStateException("Primary key column["+i+"] is null");
         try {
-            long ttl = ((t.getResetTime() - System.currentTimeMillis()) / 1000) + 10;
-            assert ttl > 0 : "ratelimits ttl is negative";
-            LOGGER.debug("t={} with ttl={}",t, ttl);
-            Object[] values = values(t);
-            Object[] valuesUsingTtl = new Object[values.length+1];
-            System.arraycopy(values,  0,  valuesUsingTtl,  0, values.length);
-            valuesUsingTtl[values.length] = (int)ttl;
-            session.execute(insertStmtUsingTtl.bind(valuesUsingTtl));
+            LOGGER.debug("t={}",t);
+            session.execute(insertStmtUsingTtl.bind(valuesUsingTtl(t)));
             return fromRow(session.execute(selectStmt.bind(pkCols)).one());
         } catch (final Exception ex) {
             String message = String.format("Failed to upsert table=%s primary key=%s", tableName, Arrays.toString(pkCols));
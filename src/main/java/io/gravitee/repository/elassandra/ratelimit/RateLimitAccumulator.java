@@ -0,0 +1,196 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.ratelimit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.gravitee.repository.ratelimit.model.RateLimit;
+
+/**
+ * Write-behind accumulator for rate limit counters.
+ *
+ * Each key keeps the last value synced with Elassandra and a lock-free striped ({@link LongAdder}) local delta.
+ * Increments are answered from the synced value plus the local delta, and aggregated deltas are flushed to
+ * Elassandra every flush interval, or as soon as the local delta of a key reaches the flush threshold.
+ * The error of a gateway is then bounded by the flush threshold plus what other gateways increment during
+ * a flush interval. A key without a synced value for the current window goes to Elassandra synchronously.
+ *
+ * @author vroyer
+ */
+public class RateLimitAccumulator implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimitAccumulator.class);
+
+    /**
+     * Underlying rate limit storage.
+     */
+    @FunctionalInterface
+    public interface Store {
+        ListenableFuture<RateLimit> incrementAndGet(String key, long weight, Supplier<RateLimit> supplier);
+    }
+
+    static class Entry {
+        final LongAdder pending = new LongAdder();
+        final AtomicBoolean flushing = new AtomicBoolean();
+        volatile RateLimit synced;
+        // delta of the flush in flight, counted until the flushed value is written to synced.
+        volatile long inflight;
+        volatile Supplier<RateLimit> supplier;
+    }
+
+    private final Store store;
+    private final long flushThreshold;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public RateLimitAccumulator(Store store, long flushIntervalMillis, long flushThreshold) {
+        this.store = store;
+        this.flushThreshold = flushThreshold;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("ratelimit-flush-%d").setDaemon(true).build());
+        this.scheduler.scheduleWithFixedDelay(this::flushAll, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public ListenableFuture<RateLimit> incrementAndGet(String key, long weight, Supplier<RateLimit> supplier) {
+        final Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+        entry.supplier = supplier;
+        final RateLimit synced = entry.synced;
+        if (synced == null || synced.getResetTime() <= System.currentTimeMillis()) {
+            // no usable global value, only this increment goes to the new window.
+            dropExpired(key, entry);
+            return Futures.transform(store.incrementAndGet(key, weight, supplier), (Function<RateLimit, RateLimit>) rateLimit -> {
+                entry.synced = rateLimit;
+                return rateLimit;
+            }, MoreExecutors.directExecutor());
+        }
+
+        entry.pending.add(weight);
+        if (entry.pending.sum() >= flushThreshold)
+            flush(key, entry);
+        // read after the flush, which moves the pending delta to inflight or synced, so that it is counted once,
+        // and in the reverse order of the flush writes, so that a flushed delta is never missed.
+        final long pending = entry.pending.sum();
+        final long inflight = entry.inflight;
+        return Futures.immediateFuture(localRateLimit(entry.synced, inflight + pending));
+    }
+
+    /**
+     * The delta of an expired window is dropped, it must not be counted in the next window.
+     */
+    private void dropExpired(String key, Entry entry) {
+        final long delta = entry.pending.sum();
+        if (delta != 0) {
+            entry.pending.add(-delta);
+            LOGGER.debug("Drop rate limit key={} delta={} of an expired window", key, delta);
+        }
+    }
+
+    private RateLimit localRateLimit(RateLimit synced, long pending) {
+        RateLimit rateLimit = new RateLimit(synced.getKey());
+        rateLimit.setCounter(synced.getCounter() + pending);
+        rateLimit.setResetTime(synced.getResetTime());
+        rateLimit.setLimit(synced.getLimit());
+        rateLimit.setSubscription(synced.getSubscription());
+        return rateLimit;
+    }
+
+    /**
+     * Flush the aggregated delta of a key, at most one flush is in flight per key.
+     */
+    void flush(String key, Entry entry) {
+        if (!entry.flushing.compareAndSet(false, true))
+            return;
+        final RateLimit synced = entry.synced;
+        if (synced == null || synced.getResetTime() <= System.currentTimeMillis()) {
+            dropExpired(key, entry);
+            entry.flushing.set(false);
+            return;
+        }
+        final long delta = entry.pending.sum();
+        if (delta == 0) {
+            entry.flushing.set(false);
+            return;
+        }
+        entry.inflight = delta;
+        entry.pending.add(-delta);
+        Futures.addCallback(store.incrementAndGet(key, delta, entry.supplier), new FutureCallback<RateLimit>() {
+            @Override
+            public void onSuccess(RateLimit rateLimit) {
+                entry.synced = rateLimit;
+                entry.inflight = 0;
+                entry.flushing.set(false);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                LOGGER.warn("Failed to flush rate limit key={} delta={}", key, delta, t);
+                entry.pending.add(delta);
+                entry.inflight = 0;
+                entry.flushing.set(false);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    void flushAll() {
+        long now = System.currentTimeMillis();
+        try {
+            for(Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                if (entry.pending.sum() != 0) {
+                    flush(e.getKey(), entry);
+                } else if (entry.synced != null && entry.synced.getResetTime() <= now && !entry.flushing.get()
+                        && entries.remove(e.getKey(), entry) && entry.pending.sum() != 0) {
+                    // an increment raced with the removal, keep it.
+                    Entry current = entries.putIfAbsent(e.getKey(), entry);
+                    if (current != null) {
+                        long delta = entry.pending.sum();
+                        entry.pending.add(-delta);
+                        current.pending.add(delta);
+                    }
+                }
+            }
+        } catch(Exception e) {
+            LOGGER.error("Failed to flush rate limits", e);
+        }
+    }
+
+    /**
+     * Flush pending deltas and stop the scheduler.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        flushAll();
+    }
+}
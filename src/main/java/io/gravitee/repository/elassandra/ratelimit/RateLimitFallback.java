@@ -0,0 +1,220 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.ratelimit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.gravitee.repository.ratelimit.model.RateLimit;
+
+/**
+ * Fail-open local rate limiter used when Elassandra is slow or unreachable.
+ *
+ * An increment not stored within the latency budget is answered from the last value synced with Elassandra plus
+ * the local increments of the window. After a number of consecutive failures or timeouts, the circuit opens and
+ * increments are answered locally without calling Elassandra. Increments that failed to be stored are kept
+ * as a per-key delta and reconciled with Elassandra once the circuit closes again, deltas of expired windows
+ * are dropped. Local answers only count what this gateway sees, so limits are enforced per gateway during
+ * a storage incident.
+ *
+ * @author vroyer
+ */
+public class RateLimitFallback implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimitFallback.class);
+
+    static class Entry {
+        // local increments since the last synced value
+        final LongAdder local = new LongAdder();
+        // increments not stored in Elassandra
+        final LongAdder pending = new LongAdder();
+        final AtomicBoolean reconciling = new AtomicBoolean();
+        volatile RateLimit synced;
+        volatile Supplier<RateLimit> supplier;
+    }
+
+    private final RateLimitAccumulator.Store store;
+    private final long latencyBudgetMillis;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile long openUntil;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public RateLimitFallback(RateLimitAccumulator.Store store, long latencyBudgetMillis, int failureThreshold, long openMillis) {
+        this.store = store;
+        this.latencyBudgetMillis = latencyBudgetMillis;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setNameFormat("ratelimit-fallback-%d").setDaemon(true).build());
+        // timeouts are cancelled on every increment answered in time, do not keep them queued.
+        executor.setRemoveOnCancelPolicy(true);
+        this.scheduler = executor;
+        this.scheduler.scheduleWithFixedDelay(this::reconcileAll, openMillis, openMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public ListenableFuture<RateLimit> incrementAndGet(String key, long weight, Supplier<RateLimit> supplier) {
+        final Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+        entry.supplier = supplier;
+        if (isOpen()) {
+            entry.pending.add(weight);
+            return Futures.immediateFuture(answerLocally(entry, weight));
+        }
+
+        final SettableFuture<RateLimit> result = SettableFuture.create();
+        final ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+            if (!result.isDone()) {
+                LOGGER.debug("Rate limit key={} not stored within {}ms, answering locally", key, latencyBudgetMillis);
+                result.set(answerLocally(entry, weight));
+                onFailure();
+            }
+        }, latencyBudgetMillis, TimeUnit.MILLISECONDS);
+        Futures.addCallback(store.incrementAndGet(key, weight, supplier), new FutureCallback<RateLimit>() {
+            @Override
+            public void onSuccess(RateLimit rateLimit) {
+                timeout.cancel(false);
+                if (result.isDone()) {
+                    // stored after the latency budget, the timeout already answered locally and counted a failure.
+                    LOGGER.debug("Rate limit key={} stored after {}ms", key, latencyBudgetMillis);
+                    return;
+                }
+                failures.set(0);
+                entry.synced = rateLimit;
+                entry.local.reset();
+                result.set(rateLimit);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                timeout.cancel(false);
+                LOGGER.debug("Failed to store rate limit key={}, answering locally", key, t);
+                entry.pending.add(weight);
+                if (!result.isDone())
+                    result.set(answerLocally(entry, weight));
+                RateLimitFallback.this.onFailure();
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
+    }
+
+    boolean isOpen() {
+        return System.currentTimeMillis() < openUntil;
+    }
+
+    private void onFailure() {
+        if (failures.incrementAndGet() >= failureThreshold && !isOpen()) {
+            LOGGER.warn("Rate limit storage circuit open for {}ms after {} consecutive failures", openMillis, failures.get());
+            openUntil = System.currentTimeMillis() + openMillis;
+        }
+    }
+
+    private RateLimit answerLocally(Entry entry, long weight) {
+        RateLimit synced = entry.synced;
+        if (synced == null || synced.getResetTime() <= System.currentTimeMillis()) {
+            synced = entry.supplier.get();
+            entry.synced = synced;
+            entry.local.reset();
+        }
+        entry.local.add(weight);
+        RateLimit rateLimit = new RateLimit(synced.getKey());
+        rateLimit.setCounter(synced.getCounter() + entry.local.sum());
+        rateLimit.setResetTime(synced.getResetTime());
+        rateLimit.setLimit(synced.getLimit());
+        rateLimit.setSubscription(synced.getSubscription());
+        return rateLimit;
+    }
+
+    /**
+     * Store the delta of a key, at most one reconciliation is in flight per key.
+     */
+    void reconcile(String key, Entry entry) {
+        if (!entry.reconciling.compareAndSet(false, true))
+            return;
+        final long delta = entry.pending.sum();
+        if (delta == 0) {
+            entry.reconciling.set(false);
+            return;
+        }
+        entry.pending.add(-delta);
+        Futures.addCallback(store.incrementAndGet(key, delta, entry.supplier), new FutureCallback<RateLimit>() {
+            @Override
+            public void onSuccess(RateLimit rateLimit) {
+                failures.set(0);
+                entry.synced = rateLimit;
+                entry.local.reset();
+                entry.reconciling.set(false);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                LOGGER.warn("Failed to reconcile rate limit key={} delta={}", key, delta, t);
+                entry.pending.add(delta);
+                entry.reconciling.set(false);
+                RateLimitFallback.this.onFailure();
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    void reconcileAll() {
+        if (isOpen())
+            return;
+        long now = System.currentTimeMillis();
+        try {
+            for(Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                boolean expired = entry.synced == null || entry.synced.getResetTime() <= now;
+                if (expired && !entry.reconciling.get()) {
+                    // the window is over, its pending delta is meaningless.
+                    entries.remove(e.getKey(), entry);
+                } else if (!expired && entry.pending.sum() != 0) {
+                    reconcile(e.getKey(), entry);
+                }
+            }
+        } catch(Exception e) {
+            LOGGER.error("Failed to reconcile rate limits", e);
+        }
+    }
+
+    /**
+     * Reconcile pending deltas and stop the scheduler.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        reconcileAll();
+    }
+}
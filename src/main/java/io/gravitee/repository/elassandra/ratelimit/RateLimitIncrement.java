@@ -0,0 +1,56 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.ratelimit;
+
+import java.util.function.Supplier;
+
+import io.gravitee.repository.ratelimit.model.RateLimit;
+
+/**
+ * One increment of a batch, see {@link ElassandraRateLimitRepository#incrementAndGet(java.util.List)}.
+ *
+ * @author vroyer
+ */
+public class RateLimitIncrement {
+
+    private final String key;
+    private final long weight;
+    private final Supplier<RateLimit> supplier;
+
+    public RateLimitIncrement(String key, long weight, Supplier<RateLimit> supplier) {
+        this.key = key;
+        this.weight = weight;
+        this.supplier = supplier;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+
+    public Supplier<RateLimit> getSupplier() {
+        return supplier;
+    }
+
+    @Override
+    public String toString() {
+        return "key="+key+", weight="+weight;
+    }
+}
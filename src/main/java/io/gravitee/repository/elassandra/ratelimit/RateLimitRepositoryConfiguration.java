@@ -16,8 +16,16 @@
  */
 package io.gravitee.repository.elassandra.ratelimit;
 
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
 import io.gravitee.repository.Scope;
 import io.gravitee.repository.elassandra.common.AbstractElassandraRepositoryConfiguration;
@@ -30,9 +38,133 @@ import io.gravitee.repository.elassandra.common.AbstractElassandraRepositoryConf
 @ComponentScan(basePackages = {"io.gravitee.repository.elassandra.ratelimit"})
 public class RateLimitRepositoryConfiguration extends AbstractElassandraRepositoryConfiguration {
 
+    @Autowired
+    private Environment environment;
+
     @Override
     protected Scope getScope() {
         return Scope.RATE_LIMIT;
     }
 
+    /**
+     * How rate limit counters are stored and incremented.
+     */
+    public enum Mode {
+        /**
+         * Read the row, add the weight in the JVM and rewrite the row (last write wins).
+         */
+        UPSERT,
+        /**
+         * Compare-and-set loop on a single-row partition using lightweight transactions, no lost updates.
+         */
+        CAS,
+        /**
+         * Compare-and-set loop on one row per window, clustered by reset time DESC in a table using the
+         * TimeWindowCompactionStrategy and a table-level default TTL, so whole SSTables expire together.
+         */
+        TIME_WINDOW
+    }
+
+    // default table TTL in compaction windows, so that TWCS keeps a bounded number of windows.
+    static final int TIME_WINDOW_TTL_COMPACTION_WINDOWS = 12;
+
+    // keeps rate limit settings for ElassandraRateLimitRepository.
+    public static class RateLimitConfig {
+        Mode mode;
+        int casMaxRetries;
+        boolean writeBehind;
+        long writeBehindFlushIntervalMillis;
+        long writeBehindFlushThreshold;
+        int timeWindowDefaultTtlSeconds;
+        int timeWindowCompactionWindowMinutes;
+        int timeWindowGcGraceSeconds;
+        int shards;
+        boolean fallback;
+        long fallbackLatencyBudgetMillis;
+        int fallbackFailureThreshold;
+        long fallbackOpenMillis;
+        Map<Pattern, Integer> shardingRules = new LinkedHashMap<>();
+
+        public Mode getMode() {
+            return mode;
+        }
+        public int getCasMaxRetries() {
+            return casMaxRetries;
+        }
+        public boolean isWriteBehind() {
+            return writeBehind;
+        }
+        public long getWriteBehindFlushIntervalMillis() {
+            return writeBehindFlushIntervalMillis;
+        }
+        public long getWriteBehindFlushThreshold() {
+            return writeBehindFlushThreshold;
+        }
+        public int getTimeWindowDefaultTtlSeconds() {
+            return timeWindowDefaultTtlSeconds;
+        }
+        public int getTimeWindowCompactionWindowMinutes() {
+            return timeWindowCompactionWindowMinutes;
+        }
+        public int getTimeWindowGcGraceSeconds() {
+            return timeWindowGcGraceSeconds;
+        }
+        /**
+         * @return number of sub-partitions of the key, from the first matching sharding rule or the default number of shards.
+         */
+        public int getShards(String key) {
+            for(Map.Entry<Pattern, Integer> rule : shardingRules.entrySet())
+                if (rule.getKey().matcher(key).matches())
+                    return rule.getValue();
+            return shards;
+        }
+        public boolean isFallback() {
+            return fallback;
+        }
+        public long getFallbackLatencyBudgetMillis() {
+            return fallbackLatencyBudgetMillis;
+        }
+        public int getFallbackFailureThreshold() {
+            return fallbackFailureThreshold;
+        }
+        public long getFallbackOpenMillis() {
+            return fallbackOpenMillis;
+        }
+        public boolean isSharded() {
+            return shards > 1 || !shardingRules.isEmpty();
+        }
+        public String toString() {
+            return "mode="+mode+", casMaxRetries="+casMaxRetries+
+                    ", writeBehind="+writeBehind+", writeBehindFlushIntervalMillis="+writeBehindFlushIntervalMillis+", writeBehindFlushThreshold="+writeBehindFlushThreshold+
+                    ", timeWindowDefaultTtlSeconds="+timeWindowDefaultTtlSeconds+", timeWindowCompactionWindowMinutes="+timeWindowCompactionWindowMinutes+
+                    ", timeWindowGcGraceSeconds="+timeWindowGcGraceSeconds+", shards="+shards+", shardingRules="+shardingRules+
+                    ", fallback="+fallback+", fallbackLatencyBudgetMillis="+fallbackLatencyBudgetMillis+", fallbackFailureThreshold="+fallbackFailureThreshold+
+                    ", fallbackOpenMillis="+fallbackOpenMillis;
+        }
+    }
+
+    @Bean
+    public RateLimitConfig rateLimitConfig() {
+        String scope = getScope().getName();
+        RateLimitConfig rateLimitConfig = new RateLimitConfig();
+        rateLimitConfig.mode = Mode.valueOf(environment.getProperty(scope + ".elassandra.mode", Mode.UPSERT.name()).toUpperCase(Locale.ROOT));
+        rateLimitConfig.casMaxRetries = environment.getProperty(scope + ".elassandra.cas.maxRetries", Integer.class, 16);
+        rateLimitConfig.writeBehind = environment.getProperty(scope + ".elassandra.writeBehind.enabled", Boolean.class, false);
+        rateLimitConfig.writeBehindFlushIntervalMillis = environment.getProperty(scope + ".elassandra.writeBehind.flushIntervalMillis", Long.class, 1000L);
+        rateLimitConfig.writeBehindFlushThreshold = environment.getProperty(scope + ".elassandra.writeBehind.flushThreshold", Long.class, 100L);
+        rateLimitConfig.timeWindowCompactionWindowMinutes = environment.getProperty(scope + ".elassandra.timeWindow.compactionWindowMinutes", Integer.class, 5);
+        rateLimitConfig.timeWindowDefaultTtlSeconds = environment.getProperty(scope + ".elassandra.timeWindow.defaultTtlSeconds", Integer.class,
+                rateLimitConfig.timeWindowCompactionWindowMinutes * 60 * TIME_WINDOW_TTL_COMPACTION_WINDOWS);
+        rateLimitConfig.timeWindowGcGraceSeconds = environment.getProperty(scope + ".elassandra.timeWindow.gcGraceSeconds", Integer.class, 3600);
+        rateLimitConfig.shards = environment.getProperty(scope + ".elassandra.sharding.shards", Integer.class, 1);
+        for(int i = 0; environment.containsProperty(scope + ".elassandra.sharding.rules[" + i + "].pattern"); i++)
+            rateLimitConfig.shardingRules.put(
+                    Pattern.compile(environment.getProperty(scope + ".elassandra.sharding.rules[" + i + "].pattern")),
+                    environment.getProperty(scope + ".elassandra.sharding.rules[" + i + "].shards", Integer.class, rateLimitConfig.shards));
+        rateLimitConfig.fallback = environment.getProperty(scope + ".elassandra.fallback.enabled", Boolean.class, false);
+        rateLimitConfig.fallbackLatencyBudgetMillis = environment.getProperty(scope + ".elassandra.fallback.latencyBudgetMillis", Long.class, 50L);
+        rateLimitConfig.fallbackFailureThreshold = environment.getProperty(scope + ".elassandra.fallback.failureThreshold", Integer.class, 5);
+        rateLimitConfig.fallbackOpenMillis = environment.getProperty(scope + ".elassandra.fallback.openMillis", Long.class, 5000L);
+        return rateLimitConfig;
+    }
 }
@@ -0,0 +1,54 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.common;
+
+import java.util.concurrent.TimeUnit;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.google.common.util.concurrent.ForwardingListenableFuture;
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * Already completed, or failed, {@link ResultSetFuture} returned by mocked sessions.
+ *
+ * @author vroyer
+ */
+public class CompletedResultSetFuture extends ForwardingListenableFuture.SimpleForwardingListenableFuture<ResultSet> implements ResultSetFuture {
+
+    public CompletedResultSetFuture(ResultSet resultSet) {
+        super(Futures.immediateFuture(resultSet));
+    }
+
+    private CompletedResultSetFuture(Throwable t) {
+        super(Futures.immediateFailedFuture(t));
+    }
+
+    public static CompletedResultSetFuture failed(Throwable t) {
+        return new CompletedResultSetFuture(t);
+    }
+
+    @Override
+    public ResultSet getUninterruptibly() {
+        return Futures.getUnchecked(delegate());
+    }
+
+    @Override
+    public ResultSet getUninterruptibly(long timeout, TimeUnit unit) {
+        return getUninterruptibly();
+    }
+}
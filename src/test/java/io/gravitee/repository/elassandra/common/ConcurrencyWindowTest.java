@@ -0,0 +1,68 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+/**
+ * @author vroyer
+ */
+public class ConcurrencyWindowTest {
+
+    @Test
+    public void shouldBoundOperationsInFlight() {
+        List<CompletableFuture<Integer>> pending = new ArrayList<>();
+        List<CompletableFuture<Integer>> results = ConcurrencyWindow.submit(Arrays.asList(1, 2, 3, 4, 5), 2, i -> {
+            CompletableFuture<Integer> future = new CompletableFuture<>();
+            pending.add(future);
+            return future;
+        });
+
+        assertEquals(2, pending.size());
+        pending.get(0).complete(10);
+        assertEquals(3, pending.size());
+        pending.get(1).completeExceptionally(new IllegalStateException("boom"));
+        pending.get(2).complete(30);
+        pending.get(3).complete(40);
+        pending.get(4).complete(50);
+        assertEquals(5, pending.size());
+
+        assertTrue(ConcurrencyWindow.allDone(results).isDone());
+        assertEquals(Integer.valueOf(10), results.get(0).join());
+        assertTrue(results.get(1).isCompletedExceptionally());
+        assertEquals(Integer.valueOf(50), results.get(4).join());
+    }
+
+    @Test
+    public void shouldNotRecurseOnCompletedOperations() {
+        List<Integer> inputs = new ArrayList<>();
+        for(int i = 0; i < 100_000; i++)
+            inputs.add(i);
+
+        List<CompletableFuture<Integer>> results = ConcurrencyWindow.submit(inputs, 4, CompletableFuture::completedFuture);
+
+        assertEquals(Integer.valueOf(99_999), results.get(99_999).join());
+    }
+}
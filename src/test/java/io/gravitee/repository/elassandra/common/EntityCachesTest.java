@@ -0,0 +1,48 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.common;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.google.common.cache.Cache;
+
+import io.gravitee.repository.elassandra.common.AbstractElassandraRepositoryConfiguration.EntityCaches;
+
+/**
+ * @author vroyer
+ */
+public class EntityCachesTest {
+
+    @Test
+    public void shouldResolveTableThenScopeSettings() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("management.elassandra.cache.maximumSize", "2")
+                .withProperty("management.elassandra.cache.plans.maximumSize", "0");
+        EntityCaches entityCaches = new EntityCaches(environment, "management");
+
+        assertNull(entityCaches.get("plans"));
+        Cache<Object, String> apis = entityCaches.get("apis");
+        for(int i = 0; i < 10; i++)
+            apis.put(i, "api" + i);
+        apis.cleanUp();
+        assertTrue(apis.size() <= 2);
+    }
+}
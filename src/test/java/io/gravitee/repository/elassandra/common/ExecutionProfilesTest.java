@@ -0,0 +1,59 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.datastax.driver.core.ConsistencyLevel;
+
+import io.gravitee.repository.elassandra.common.AbstractElassandraRepositoryConfiguration.ExecutionProfile;
+import io.gravitee.repository.elassandra.common.AbstractElassandraRepositoryConfiguration.ExecutionProfiles;
+import io.gravitee.repository.elassandra.common.AbstractElassandraRepositoryConfiguration.ExecutionProfiles.Operation;
+
+/**
+ * @author vroyer
+ */
+public class ExecutionProfilesTest {
+
+    @Test
+    public void shouldResolveTableThenScopeProfiles() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("ratelimit.elassandra.profiles.fast.consistencyLevel", "local_one")
+                .withProperty("ratelimit.elassandra.profiles.fast.readTimeoutMillis", "500")
+                .withProperty("ratelimit.elassandra.profiles.cas.serialConsistencyLevel", "LOCAL_SERIAL")
+                .withProperty("ratelimit.elassandra.operations.read", "fast")
+                .withProperty("ratelimit.elassandra.operations.ratelimits_cas.write", "cas");
+        ExecutionProfiles executionProfiles = new ExecutionProfiles(environment, "ratelimit");
+
+        Map<Operation, ExecutionProfile> profiles = executionProfiles.get("ratelimits_cas");
+        assertEquals(ConsistencyLevel.LOCAL_ONE, profiles.get(Operation.READ).getConsistencyLevel());
+        assertEquals(500, profiles.get(Operation.READ).getReadTimeoutMillis());
+        assertEquals(ConsistencyLevel.LOCAL_SERIAL, profiles.get(Operation.WRITE).getSerialConsistencyLevel());
+        assertFalse(profiles.containsKey(Operation.DELETE));
+
+        Map<Operation, ExecutionProfile> otherProfiles = executionProfiles.get("ratelimits");
+        assertSame(profiles.get(Operation.READ), otherProfiles.get(Operation.READ));
+        assertFalse(otherProfiles.containsKey(Operation.WRITE));
+    }
+}
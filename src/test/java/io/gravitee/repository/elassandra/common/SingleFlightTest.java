@@ -0,0 +1,63 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * @author vroyer
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void shouldShareInFlightRead() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger reads = new AtomicInteger();
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+
+        CompletableFuture<Integer> first = singleFlight.execute("a", () -> { reads.incrementAndGet(); return pending; });
+        CompletableFuture<Integer> second = singleFlight.execute("a", () -> { reads.incrementAndGet(); return pending; });
+        assertEquals(1, reads.get());
+        assertFalse(second.isDone());
+
+        second.cancel(true);
+        pending.complete(1);
+        assertEquals(Integer.valueOf(1), first.join());
+        assertEquals(0, singleFlight.size());
+
+        assertEquals(Integer.valueOf(2), singleFlight.get("a", () -> { reads.incrementAndGet(); return 2; }));
+        assertEquals(2, reads.get());
+    }
+
+    @Test
+    public void shouldStartNewReadAfterForget() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger reads = new AtomicInteger();
+
+        singleFlight.execute("a", () -> { reads.incrementAndGet(); return new CompletableFuture<>(); });
+        singleFlight.forget("a");
+        singleFlight.execute("a", () -> { reads.incrementAndGet(); return new CompletableFuture<>(); });
+
+        assertEquals(2, reads.get());
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Session;
+
+import io.gravitee.repository.elassandra.common.AbstractElassandraRepositoryConfiguration;
+import io.gravitee.repository.management.model.Audit;
+import io.gravitee.repository.management.model.Rating;
+
+/**
+ * Run the aggregations against Elassandra, to check the columns of the rows it flattens them into.
+ *
+ * @author vroyer
+ */
+public class ElassandraAggregationTest {
+
+    private static final String KEYSPACE = "gravitee";
+    private static final long DAY = 24 * 3600 * 1000L;
+    // 2020-01-01T00:00:00Z
+    private static final long FIRST_DAY = 18262 * DAY;
+
+    private static Cluster cluster;
+    private static Session session;
+
+    @BeforeClass
+    public static void startElassandra() throws Exception {
+        EmbeddedCassandraServerHelper.startEmbeddedCassandra(100000L);
+        cluster = Cluster.builder().addContactPoints("localhost").withPort(9142).build();
+        try (Session s = cluster.connect()) {
+            s.execute(String.format(Locale.ROOT, "CREATE KEYSPACE IF NOT EXISTS %s WITH replication = { 'class': 'NetworkTopologyStrategy', 'datacenter1': '1' }", KEYSPACE));
+        }
+        session = cluster.connect(KEYSPACE);
+    }
+
+    @AfterClass
+    public static void stopElassandra() {
+        if (cluster != null)
+            cluster.close();
+    }
+
+    @Test
+    public void shouldAverageRatesByApi() throws Exception {
+        ElassandraRatingRepository repository = init(new ElassandraRatingRepository());
+        repository.create(rating("r1", "api1", 5));
+        repository.create(rating("r2", "api1", 3));
+        repository.create(rating("r3", "api2", 2));
+
+        // one row per api bucket, the avg metric is named after its path and type
+        List<Map<String, Object>> rows = repository.aggregations(new SearchSourceBuilder().size(0)
+                .aggregation(AggregationBuilders.terms("api").field("api")
+                        .subAggregation(AggregationBuilders.avg("rate").field("rate"))));
+        assertEquals(2, rows.size());
+        assertTrue(rows.get(0).keySet().toString(), rows.get(0).keySet().containsAll(Arrays.asList("api.key", "api.count", "api.rate.avg")));
+
+        Map<String, Double> averages = repository.averageByApi(null);
+        assertEquals(2, averages.size());
+        assertEquals(4.0d, averages.get("api1"), 0.001d);
+        assertEquals(2.0d, averages.get("api2"), 0.001d);
+    }
+
+    @Test
+    public void shouldCountAuditsByDay() throws Exception {
+        ElassandraAuditRepository repository = init(new ElassandraAuditRepository());
+        repository.create(audit("a1", FIRST_DAY + 10 * 3600 * 1000L));
+        repository.create(audit("a2", FIRST_DAY + 12 * 3600 * 1000L));
+        repository.create(audit("a3", FIRST_DAY + DAY + 3600 * 1000L));
+
+        // audits are searchable after the index refresh
+        long deadline = System.currentTimeMillis() + 10000;
+        while (repository.count(QueryBuilders.matchAllQuery()) < 3 && System.currentTimeMillis() < deadline)
+            Thread.sleep(100);
+
+        // one row per day bucket, keyed by a timestamp
+        List<Map<String, Object>> rows = repository.aggregations(new SearchSourceBuilder().size(0)
+                .aggregation(AggregationBuilders.dateHistogram("day").field("created_at").dateHistogramInterval(DateHistogramInterval.DAY)));
+        assertEquals(2, rows.size());
+        assertTrue(rows.get(0).keySet().toString(), rows.get(0).keySet().containsAll(Arrays.asList("day.key", "day.count")));
+        assertTrue(rows.get(0).get("day.key") instanceof Date);
+
+        Map<Long, Long> counts = repository.countByDay(null);
+        assertEquals(2, counts.size());
+        assertEquals(Long.valueOf(2), counts.get(FIRST_DAY));
+        assertEquals(Long.valueOf(1), counts.get(FIRST_DAY + DAY));
+    }
+
+    private static <R extends ElassandraCrud<?, ?>> R init(R repository) {
+        AbstractElassandraRepositoryConfiguration.Config config = new AbstractElassandraRepositoryConfiguration.Config();
+        ReflectionTestUtils.setField(config, "endpoint", "http://localhost:9200");
+        ReflectionTestUtils.setField(config, "indexPrefix", "");
+        // subclasses may declare their own session field
+        ElassandraCrud<?, ?> crud = repository;
+        crud.session = session;
+        crud.config = config;
+        crud.ssl = new AbstractElassandraRepositoryConfiguration.Ssl();
+        crud.init();
+        return repository;
+    }
+
+    private static Rating rating(String id, String api, int rate) {
+        Rating rating = new Rating();
+        rating.setId(id);
+        rating.setApi(api);
+        rating.setUser("user");
+        rating.setRate((byte) rate);
+        rating.setCreatedAt(new Date());
+        rating.setUpdatedAt(rating.getCreatedAt());
+        return rating;
+    }
+
+    private static Audit audit(String id, long createdAt) {
+        Audit audit = new Audit();
+        audit.setId(id);
+        audit.setReferenceType(Audit.AuditReferenceType.API);
+        audit.setReferenceId("api1");
+        audit.setUser("user");
+        audit.setEvent("API_CREATED");
+        audit.setCreatedAt(new Date(createdAt));
+        return audit;
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.TokenRange;
+
+import io.gravitee.repository.elassandra.common.AbstractElassandraRepositoryConfiguration;
+
+/**
+ * Check that a full table scan reads every row with a bounded number of queries, each routed to the replicas of
+ * its token range.
+ *
+ * @author vroyer
+ */
+public class ElassandraCrudScanTest {
+
+    private static final String KEYSPACE = "gravitee";
+
+    private static Cluster cluster;
+    private static Session session;
+    private static ElassandraCrud<String, String> crud;
+    private static Set<String> rows;
+
+    @BeforeClass
+    public static void startElassandra() throws Exception {
+        EmbeddedCassandraServerHelper.startEmbeddedCassandra(100000L);
+        cluster = Cluster.builder().addContactPoints("localhost").withPort(9142).build();
+        try (Session s = cluster.connect()) {
+            s.execute(String.format(Locale.ROOT, "CREATE KEYSPACE IF NOT EXISTS %s WITH replication = { 'class': 'NetworkTopologyStrategy', 'datacenter1': '1' }", KEYSPACE));
+        }
+        session = cluster.connect(KEYSPACE);
+        crud = new ElassandraCrud<String, String>("scanned", new String[] { "id" }, new String[] { "text" }, 1, new boolean[0]) {
+            @Override
+            public Object[] values(String s) {
+                return new Object[] { s };
+            }
+
+            @Override
+            public String fromRow(Row row) {
+                return row == null ? null : row.getString("id");
+            }
+        };
+        ReflectionTestUtils.setField(crud, "session", session);
+        crud.init();
+        rows = IntStream.range(0, 200).mapToObj(Integer::toString).collect(Collectors.toSet());
+        for(String id : rows)
+            crud.create(id);
+    }
+
+    @AfterClass
+    public static void stopElassandra() {
+        if (cluster != null)
+            cluster.close();
+    }
+
+    @Test
+    public void shouldScanSingleReplicaSetWithOneQuery() throws Exception {
+        Session scanning = scanningSession(cluster.getMetadata(), 16);
+
+        assertEquals(rows, crud.findAll());
+        verify(scanning, times(1)).executeAsync(any(Statement.class));
+    }
+
+    @Test
+    public void shouldRouteRangeQueriesToTheirReplicas() throws Exception {
+        // split the ring of the embedded node into 16 ranges or more, owned in turn by 3 stand-in replica sets
+        Metadata real = cluster.getMetadata();
+        Metadata metadata = mock(Metadata.class, delegatesTo(real));
+        TreeSet<TokenRange> parts = new TreeSet<>();
+        for(TokenRange range : real.getTokenRanges())
+            for(TokenRange part : range.unwrap())
+                parts.addAll(part.splitEvenly(Math.max(1, 16 / real.getTokenRanges().size())));
+        List<TokenRange> ring = new ArrayList<>(parts);
+        ring.remove(parts.first());
+        ring.set(ring.size() - 1, real.newTokenRange(parts.last().getStart(), parts.first().getEnd()));
+        List<Set<Host>> replicaSets = new ArrayList<>();
+        for(int i = 0; i < 3; i++)
+            replicaSets.add(Collections.singleton(mock(Host.class)));
+        doReturn(new HashSet<>(ring)).when(metadata).getTokenRanges();
+        doAnswer(invocation -> replicaSets.get(ring.indexOf(invocation.<TokenRange>getArgument(1)) % 3))
+                .when(metadata).getReplicas(anyString(), any(TokenRange.class));
+        Session scanning = scanningSession(metadata, 4);
+
+        assertEquals(rows, crud.findAll());
+        ArgumentCaptor<Statement> queries = ArgumentCaptor.forClass(Statement.class);
+        verify(scanning, times(4)).executeAsync(queries.capture());
+        int tails = 0;
+        for(Statement query : queries.getAllValues()) {
+            BoundStatement bound = (BoundStatement) query;
+            if (bound.preparedStatement().getVariables().size() == 1) {
+                // the end of the ring is routed to the replicas of the minimum token
+                tails++;
+                assertEquals(parts.last().getEnd(), bound.getRoutingToken());
+            } else {
+                assertEquals(bound.getToken(1), bound.getRoutingToken());
+            }
+        }
+        assertEquals(1, tails);
+    }
+
+    private static Session scanningSession(Metadata metadata, int maxRanges) {
+        Cluster scannedCluster = mock(Cluster.class, delegatesTo(cluster));
+        doReturn(metadata).when(scannedCluster).getMetadata();
+        Session scanning = mock(Session.class, delegatesTo(session));
+        doReturn(scannedCluster).when(scanning).getCluster();
+        AbstractElassandraRepositoryConfiguration.Config config = new AbstractElassandraRepositoryConfiguration.Config();
+        ReflectionTestUtils.setField(config, "scanConcurrency", 2);
+        ReflectionTestUtils.setField(config, "scanMaxRanges", maxRanges);
+        ReflectionTestUtils.setField(crud, "config", config);
+        ReflectionTestUtils.setField(crud, "session", scanning);
+        return scanning;
+    }
+}
@@ -0,0 +1,505 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_MOCKS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.Configuration;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.QueryOptions;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Futures;
+
+import io.gravitee.repository.elassandra.common.AbstractElassandraRepositoryConfiguration;
+import io.gravitee.repository.elassandra.common.CompletedResultSetFuture;
+import io.gravitee.repository.exceptions.TechnicalException;
+
+/**
+ * Check the round trips of the CRUD methods, and that the asynchronous ones only chain asynchronous statements.
+ *
+ * @author vroyer
+ */
+public class ElassandraCrudTest {
+
+    private Session session;
+    private AbstractElassandraRepositoryConfiguration.Config config;
+    private ElassandraCrud<String, String> crud;
+
+    @Before
+    public void setUp() {
+        session = mock(Session.class);
+        crud = new ElassandraCrud<String, String>("test", new String[] { "id", "name" }, new String[] { "text", "text" }, 1, new boolean[0]) {
+            // "id:name" or "id"
+            @Override
+            public Object[] values(String s) {
+                String[] parts = s.split(":");
+                return new Object[] { parts[0], parts.length > 1 ? parts[1] : null };
+            }
+
+            @Override
+            public String fromRow(Row row) {
+                if (row == null)
+                    return null;
+                return row.getString("name") == null ? row.getString("id") : row.getString("id") + ":" + row.getString("name");
+            }
+        };
+        config = new AbstractElassandraRepositoryConfiguration.Config();
+        ReflectionTestUtils.setField(config, "readBackOnWrite", true);
+        ReflectionTestUtils.setField(crud, "session", session);
+        ReflectionTestUtils.setField(crud, "config", config);
+        for(String stmt : new String[] { "selectStmt", "selectAllStmt", "scanRangeStmt", "scanTailStmt", "insertStmt", "updateIfExistsStmt", "deleteStmt" })
+            ReflectionTestUtils.setField(crud, stmt, mock(PreparedStatement.class, RETURNS_MOCKS));
+    }
+
+    @Test
+    public void shouldReadBackOnWrite() throws Exception {
+        when(session.execute(any(Statement.class))).thenReturn(resultSet(row("a")));
+
+        assertEquals("a", crud.create("a"));
+        verify(session, times(2)).execute(any(Statement.class));
+        crud.update("a");
+        verify(session, times(5)).execute(any(Statement.class));
+    }
+
+    @Test
+    public void shouldWriteInOneRoundTrip() throws Exception {
+        ReflectionTestUtils.setField(config, "readBackOnWrite", false);
+        ResultSet applied = resultSet(null);
+        when(applied.wasApplied()).thenReturn(true);
+        ResultSet notApplied = resultSet(null);
+        when(session.execute(any(Statement.class))).thenReturn(applied, applied, notApplied);
+
+        assertEquals("a", crud.create("a"));
+        assertEquals("a", crud.update("a"));
+        verify(session, times(2)).execute(any(Statement.class));
+        try {
+            crud.update("b");
+            fail("update of a missing row should fail");
+        } catch (IllegalStateException e) {
+            verify(session, times(3)).execute(any(Statement.class));
+        }
+    }
+
+    @Test
+    public void shouldUpdateChangedColumnsOnly() throws Exception {
+        ReflectionTestUtils.setField(config, "partialUpdate", true);
+        Row row = row("a");
+        when(row.getString("name")).thenReturn("old");
+        when(session.execute(any(Statement.class))).thenReturn(resultSet(row));
+        when(session.prepareAsync(anyString())).thenReturn(Futures.immediateFuture(mock(PreparedStatement.class, RETURNS_MOCKS)));
+        when(session.executeAsync(any(Statement.class))).thenReturn(new CompletedResultSetFuture(resultSet(null)));
+
+        assertEquals("a:old", crud.update("a:old"));
+        verify(session, never()).executeAsync(any(Statement.class));
+
+        crud.update("a:new");
+        crud.update("a:new");
+        verify(session, times(1)).prepareAsync("UPDATE test SET name = ? WHERE id= ?");
+        verify(session, times(2)).executeAsync(any(Statement.class));
+        // the 3 reads of the current rows, never a full row insert
+        verify(session, times(3)).execute(any(Statement.class));
+    }
+
+    @Test
+    public void shouldFindInParallel() throws Exception {
+        when(session.executeAsync(any(Statement.class))).thenReturn(
+                new CompletedResultSetFuture(resultSet(row("a"))),
+                new CompletedResultSetFuture(resultSet(null)),
+                new CompletedResultSetFuture(resultSet(row("c"))));
+
+        List<String> found = crud.findAllAsync(Arrays.asList("a", "b", "c")).get();
+
+        assertEquals(Arrays.asList("a", "c"), found);
+        verify(session, times(3)).executeAsync(any(Statement.class));
+        verifyNoBlockingCall();
+    }
+
+    @Test
+    public void shouldMultiGetDistinctKeysInOrder() throws Exception {
+        ReflectionTestUtils.setField(config, "multiGetConcurrency", 2);
+        when(session.executeAsync(any(Statement.class))).thenReturn(
+                new CompletedResultSetFuture(resultSet(row("c"))),
+                new CompletedResultSetFuture(resultSet(row("a"))),
+                new CompletedResultSetFuture(resultSet(null)));
+
+        assertEquals(Arrays.asList("c", "a"), crud.findAll(Arrays.asList("c", "a", "c", "b", "a")));
+        verify(session, times(3)).executeAsync(any(Statement.class));
+        verifyNoBlockingCall();
+    }
+
+    @Test
+    public void shouldFetchAllPagesAsynchronously() throws Exception {
+        ResultSet lastPage = mock(ResultSet.class);
+        when(lastPage.getAvailableWithoutFetching()).thenReturn(1);
+        when(lastPage.isFullyFetched()).thenReturn(true);
+        Row c = row("c");
+        when(lastPage.one()).thenReturn(c);
+        ResultSet firstPage = mock(ResultSet.class);
+        when(firstPage.getAvailableWithoutFetching()).thenReturn(2);
+        when(firstPage.isFullyFetched()).thenReturn(false);
+        Row a = row("a");
+        Row b = row("b");
+        when(firstPage.one()).thenReturn(a, b);
+        when(firstPage.fetchMoreResults()).thenReturn(new CompletedResultSetFuture(lastPage));
+        when(session.executeAsync(any(Statement.class))).thenReturn(new CompletedResultSetFuture(firstPage));
+
+        Set<String> all = crud.findAllAsync().get();
+
+        assertEquals(3, all.size());
+        verifyNoBlockingCall();
+    }
+
+    @Test
+    public void shouldStreamPagesLazily() throws Exception {
+        // no stream.fetchSize, pages of the session default fetch size
+        Cluster cluster = mock(Cluster.class);
+        Configuration configuration = mock(Configuration.class);
+        when(session.getCluster()).thenReturn(cluster);
+        when(cluster.getConfiguration()).thenReturn(configuration);
+        when(configuration.getQueryOptions()).thenReturn(new QueryOptions().setFetchSize(4));
+        ResultSet rs = mock(ResultSet.class);
+        Row a = row("a");
+        Row b = row("b");
+        Row c = row("c");
+        when(rs.isExhausted()).thenReturn(false);
+        when(rs.isFullyFetched()).thenReturn(false);
+        when(rs.getAvailableWithoutFetching()).thenReturn(4, 3, 2, 1);
+        when(rs.one()).thenReturn(a, b, c);
+        when(session.execute(any(Statement.class))).thenReturn(rs);
+
+        List<String> firstRows = crud.stream().limit(2).collect(Collectors.toList());
+
+        assertEquals(Arrays.asList("a", "b"), firstRows);
+        // half of the page not yet consumed, no prefetch
+        verify(rs, never()).fetchMoreResults();
+        verify(rs, times(2)).one();
+
+        crud.stream().limit(3).forEach(s -> {});
+        verify(rs, times(1)).fetchMoreResults();
+    }
+
+    @Test
+    public void shouldScrollSlicesInParallel() throws Exception {
+        ReflectionTestUtils.setField(config, "scrollSlices", 2);
+        PreparedStatement esQueryStmt = mock(PreparedStatement.class, RETURNS_MOCKS);
+        ReflectionTestUtils.setField(crud, "esQueryStmt", esQueryStmt);
+        ResultSet rs = resultSet(row("a"));
+        when(rs.getAvailableWithoutFetching()).thenReturn(1);
+        when(rs.isFullyFetched()).thenReturn(true);
+        when(session.executeAsync(any(Statement.class))).thenReturn(new CompletedResultSetFuture(rs));
+
+        List<String> chunks = Collections.synchronizedList(new ArrayList<>());
+        assertEquals(2L, (long) crud.scrollAsync(new SearchSourceBuilder(), chunks::addAll).get());
+        assertEquals(Arrays.asList("a", "a"), chunks);
+        ArgumentCaptor<Object> esQueries = ArgumentCaptor.forClass(Object.class);
+        verify(esQueryStmt, times(2)).bind(esQueries.capture());
+        assertTrue(esQueries.getAllValues().get(1).toString().contains("\"id\":1,\"max\":2}"));
+
+        // sorted hits are not sliced
+        crud.scrollAsync(new SearchSourceBuilder().sort("name"), chunks::addAll).get();
+        verify(session, times(3)).executeAsync(any(Statement.class));
+        verifyNoBlockingCall();
+    }
+
+    @Test
+    public void shouldScanWholeTableWithoutTokenMetadata() throws Exception {
+        Cluster cluster = mock(Cluster.class);
+        Metadata metadata = mock(Metadata.class);
+        when(session.getCluster()).thenReturn(cluster);
+        when(cluster.getMetadata()).thenReturn(metadata);
+        when(metadata.getTokenRanges()).thenReturn(Collections.emptySet());
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getAvailableWithoutFetching()).thenReturn(1);
+        when(rs.isFullyFetched()).thenReturn(true);
+        Row a = row("a");
+        when(rs.one()).thenReturn(a);
+        when(session.executeAsync(any(Statement.class))).thenReturn(new CompletedResultSetFuture(rs));
+
+        assertEquals(Collections.singleton("a"), crud.findAll());
+        verify(session, times(1)).executeAsync(any(Statement.class));
+        verifyNoBlockingCall();
+    }
+
+    @Test
+    public void shouldServeHotReadsFromCache() throws Exception {
+        ReflectionTestUtils.setField(crud, "rowCache", CacheBuilder.newBuilder().maximumSize(10).recordStats().build());
+        when(session.execute(any(Statement.class))).thenReturn(resultSet(row("a")));
+
+        assertEquals("a", crud.findById("a").get());
+        assertEquals("a", crud.findById("a").get());
+        assertEquals("a", crud.findByIdAsync("a").get().get());
+        verify(session, times(1)).execute(any(Statement.class));
+        assertEquals(2, crud.cacheStats().get().hitCount());
+        assertEquals(1, crud.cacheStats().get().missCount());
+
+        crud.delete("a");
+        crud.findById("a");
+        verify(session, times(3)).execute(any(Statement.class));
+    }
+
+    @Test
+    public void shouldCacheSearchesUntilWrite() throws Exception {
+        ReflectionTestUtils.setField(crud, "searchCache", CacheBuilder.newBuilder().maximumSize(10).build());
+        ReflectionTestUtils.setField(crud, "esQueryStmt", mock(PreparedStatement.class, RETURNS_MOCKS));
+        ResultSet rs = resultSet(null);
+        when(rs.all()).thenReturn(Collections.singletonList(row("a")));
+        when(session.execute(any(Statement.class))).thenReturn(rs);
+
+        assertEquals(1, crud.searchRows("{}").size());
+        assertEquals(1, crud.searchRows("{}").size());
+        verify(session, times(1)).execute(any(Statement.class));
+
+        crud.delete("a");
+        crud.searchRows("{}");
+        verify(session, times(3)).execute(any(Statement.class));
+    }
+
+    @Test
+    public void shouldSearchAfterCursorWithIdTieBreaker() throws Exception {
+        PreparedStatement esQueryStmtWithLimit = mock(PreparedStatement.class, RETURNS_MOCKS);
+        ReflectionTestUtils.setField(crud, "esQueryStmtWithLimit", esQueryStmtWithLimit);
+        when(session.execute(any(Statement.class))).thenThrow(new IllegalStateException("stop"));
+        // [page number, sort values of the last hit of the previous page]
+        String cursor = Base64.getUrlEncoder().withoutPadding().encodeToString("[2,\"b\"]".getBytes(StandardCharsets.UTF_8));
+
+        SearchSourceBuilder source = new SearchSourceBuilder().sort("name");
+        try {
+            crud.searchAfter(source, 10, cursor);
+            fail("search should reach the session");
+        } catch (IllegalStateException e) {
+            assertEquals("stop", e.getMessage());
+        }
+        ArgumentCaptor<Object> esQuery = ArgumentCaptor.forClass(Object.class);
+        verify(esQueryStmtWithLimit).bind(esQuery.capture(), any());
+        assertTrue(esQuery.getValue().toString().contains("\"search_after\":[\"b\"]"));
+        assertTrue(esQuery.getValue().toString().contains("{\"id\":{\"order\":\"asc\"}}"));
+        // the caller's source is left untouched
+        assertEquals(1, source.sorts().size());
+        assertEquals(-1, source.size());
+        assertEquals(null, source.searchAfter());
+
+        try {
+            crud.searchAfter(new SearchSourceBuilder().sort("name.keyword"), 10, null);
+            fail("sort on a field that is not a column should be rejected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().startsWith("Cursor paging requires sorts on columns"));
+        }
+
+        try {
+            crud.searchAfter(new SearchSourceBuilder(), 10, "not a cursor");
+            fail("invalid cursor should be rejected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().startsWith("Invalid cursor"));
+        }
+    }
+
+    @Test
+    public void shouldSortMissingValuesAsElasticsearch() {
+        ColumnDefinitions columns = mock(ColumnDefinitions.class);
+        when(columns.getType("score")).thenReturn(DataType.cdouble());
+        when(columns.getType("count")).thenReturn(DataType.bigint());
+        when(columns.getType("name")).thenReturn(DataType.text());
+        Row row = mock(Row.class);
+        when(row.getColumnDefinitions()).thenReturn(columns);
+        when(row.getObject(anyString())).thenReturn(null);
+
+        assertEquals(Double.POSITIVE_INFINITY, ElassandraCrud.sortValue(row, SortBuilders.fieldSort("score")));
+        assertEquals(Double.NEGATIVE_INFINITY, ElassandraCrud.sortValue(row, SortBuilders.fieldSort("score").order(SortOrder.DESC)));
+        assertEquals(Long.MAX_VALUE, ElassandraCrud.sortValue(row, SortBuilders.fieldSort("count")));
+        assertEquals(Long.MIN_VALUE, ElassandraCrud.sortValue(row, SortBuilders.fieldSort("count").order(SortOrder.DESC)));
+        assertEquals(Long.MIN_VALUE, ElassandraCrud.sortValue(row, SortBuilders.fieldSort("count").missing("_first")));
+        assertEquals(0L, ElassandraCrud.sortValue(row, SortBuilders.fieldSort("count").missing(0L)));
+        assertEquals(null, ElassandraCrud.sortValue(row, SortBuilders.fieldSort("name")));
+    }
+
+    @Test
+    public void shouldReadMaxFromAggregation() throws Exception {
+        ReflectionTestUtils.setField(crud, "esAggregationQuery", "SELECT * FROM test WHERE es_query = ?");
+        Row max = mock(Row.class);
+        when(max.getObject(0)).thenReturn(7.0d);
+        Row none = mock(Row.class);
+        when(none.getObject(0)).thenReturn(Double.NEGATIVE_INFINITY);
+        when(session.execute(any(Statement.class))).thenReturn(resultSet(max), resultSet(none));
+
+        assertEquals(Optional.of(7.0d), crud.max("order", QueryBuilders.matchAllQuery()));
+        assertEquals(Optional.empty(), crud.max("order", QueryBuilders.matchAllQuery()));
+        ArgumentCaptor<Statement> statements = ArgumentCaptor.forClass(Statement.class);
+        verify(session, times(2)).execute(statements.capture());
+        assertTrue(statements.getValue() instanceof SimpleStatement);
+        assertTrue(((SimpleStatement) statements.getValue()).getValues()[0].toString().contains("\"size\":0"));
+        assertEquals(Integer.MAX_VALUE, statements.getValue().getFetchSize());
+    }
+
+    @Test
+    public void shouldReadFlattenedAggregationRows() {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("day.key", new Date(86400000L));
+        row.put("day.count", 3L);
+        row.put("day.rate.avg", 4.5d);
+
+        assertEquals(86400000L, ElassandraCrud.bucketKey(row, "day"));
+        assertEquals(3L, ElassandraCrud.bucketCount(row, "day"));
+        assertEquals(0L, ElassandraCrud.bucketCount(row, "day.status"));
+        assertEquals(4.5d, ElassandraCrud.metric(row, "day.rate").doubleValue(), 0d);
+        assertEquals(null, ElassandraCrud.metric(row, "day.users"));
+    }
+
+    @Test
+    public void shouldPrepareOneStatementPerProjection() throws Exception {
+        when(session.prepare(anyString())).thenReturn(mock(PreparedStatement.class, RETURNS_MOCKS));
+        when(session.execute(any(Statement.class))).thenReturn(resultSet(row("a")));
+
+        assertEquals(Collections.singleton("id"), crud.columnsExcept("name"));
+        assertEquals("a", crud.findById("a", crud.columnsExcept("name")).get());
+        crud.findById("b", crud.columnsExcept("name"));
+        crud.searchStream("{}", Collections.emptySet());
+        verify(session, times(1)).prepare("SELECT id FROM test WHERE id= ?");
+        verify(session, times(2)).prepare(anyString());
+        try {
+            crud.findById("a", Collections.singleton("unknown"));
+            fail("unknown column should be rejected");
+        } catch (IllegalStateException e) {
+            assertEquals("Unknown column unknown in table=test", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldCoalesceProjectedReads() throws Exception {
+        ReflectionTestUtils.setField(config, "coalesceReads", true);
+        when(session.prepare(anyString())).thenReturn(mock(PreparedStatement.class, RETURNS_MOCKS));
+        ResultSet rs = resultSet(row("a"));
+        List<Integer> inflight = new ArrayList<>();
+        when(session.execute(any(Statement.class))).thenAnswer(invocation -> {
+            inflight.add(crud.inflightReads.size());
+            // a write to the row forgets the projected read in flight
+            crud.evictKey("a");
+            inflight.add(crud.inflightReads.size());
+            return rs;
+        });
+
+        assertEquals("a", crud.findById("a", crud.columnsExcept("name")).get());
+        assertEquals(Arrays.asList(1, 0), inflight);
+        verify(session, times(1)).execute(any(Statement.class));
+    }
+
+    @Test
+    public void shouldFailUpdateOfMissingRow() throws Exception {
+        when(session.executeAsync(any(Statement.class))).thenReturn(new CompletedResultSetFuture(resultSet(null)));
+
+        try {
+            crud.updateAsync("a").get();
+            fail("update of a missing row should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        verify(session, times(1)).executeAsync(any(Statement.class));
+    }
+
+    @Test
+    public void shouldWrapDriverErrors() throws Exception {
+        when(session.executeAsync(any(Statement.class))).thenReturn(CompletedResultSetFuture.failed(new IllegalStateException("boom")));
+
+        try {
+            crud.findByIdAsync("a").get();
+            fail("driver error should be propagated");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TechnicalException);
+        }
+    }
+
+    @Test
+    public void shouldBatchBulkCreateByPartition() throws Exception {
+        ReflectionTestUtils.setField(config, "bulkConcurrency", 2);
+        ReflectionTestUtils.setField(config, "bulkBatchSize", 2);
+        when(session.executeAsync(any(Statement.class))).thenReturn(
+                new CompletedResultSetFuture(resultSet(null)),
+                CompletedResultSetFuture.failed(new IllegalStateException("boom")));
+
+        try {
+            crud.create(Arrays.asList("a:1", "a:2", null, "b:1"));
+            fail("bulk create should report failed rows");
+        } catch (TechnicalException e) {
+            assertEquals("Failed to create 2/4 rows in table=test", e.getMessage());
+            assertEquals(2, e.getSuppressed().length);
+        }
+        ArgumentCaptor<Statement> statements = ArgumentCaptor.forClass(Statement.class);
+        verify(session, times(2)).executeAsync(statements.capture());
+        assertTrue(statements.getAllValues().get(0) instanceof BatchStatement);
+        assertEquals(2, ((BatchStatement) statements.getAllValues().get(0)).size());
+        verifyNoBlockingCall();
+    }
+
+    private void verifyNoBlockingCall() {
+        verify(session, never()).execute(any(Statement.class));
+        verify(session, never()).execute(anyString());
+    }
+
+    private static Row row(String id) {
+        Row row = mock(Row.class);
+        when(row.getString("id")).thenReturn(id);
+        return row;
+    }
+
+    private static ResultSet resultSet(Row row) {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.one()).thenReturn(row);
+        return resultSet;
+    }
+}
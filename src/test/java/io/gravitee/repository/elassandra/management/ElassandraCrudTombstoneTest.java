@@ -0,0 +1,120 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.management;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.Locale;
+
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Keyspace;
+import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+
+/**
+ * Count the tombstones read back from a freshly created row with absent fields.
+ *
+ * @author vroyer
+ */
+public class ElassandraCrudTombstoneTest {
+
+    private static final String KEYSPACE = "gravitee";
+
+    private static Cluster cluster;
+    private static Session session;
+
+    @BeforeClass
+    public static void startElassandra() throws Exception {
+        EmbeddedCassandraServerHelper.startEmbeddedCassandra(100000L);
+        cluster = Cluster.builder().addContactPoints("localhost").withPort(9142).build();
+        try (Session s = cluster.connect()) {
+            s.execute(String.format(Locale.ROOT, "CREATE KEYSPACE IF NOT EXISTS %s WITH replication = { 'class': 'NetworkTopologyStrategy', 'datacenter1': '1' }", KEYSPACE));
+        }
+        session = cluster.connect(KEYSPACE);
+    }
+
+    @AfterClass
+    public static void stopElassandra() {
+        if (cluster != null)
+            cluster.close();
+    }
+
+    @Test
+    public void shouldCreateWithoutTombstones() throws Exception {
+        ElassandraCrud<String[], String> crud = crud("tombstones_unset");
+        assertTrue((boolean) ReflectionTestUtils.getField(crud, "unsetNulls"));
+
+        assertArrayEquals(new String[] { "a", "name", null, null }, crud.create(new String[] { "a", "name", null, null }));
+        assertEquals(0, tombstones(crud));
+    }
+
+    @Test
+    public void shouldCreateTombstonesWhenBindingNulls() throws Exception {
+        ElassandraCrud<String[], String> crud = crud("tombstones_null");
+        ReflectionTestUtils.setField(crud, "unsetNulls", false);
+
+        crud.create(new String[] { "a", "name", null, null });
+        assertEquals(2, tombstones(crud));
+    }
+
+    @Test
+    public void shouldBindNullsWithoutCluster() {
+        // stand-in sessions have no cluster to tell the protocol version.
+        assertFalse(ElassandraCrud.supportsUnset(mock(Session.class)));
+        assertTrue(ElassandraCrud.supportsUnset(session));
+    }
+
+    private static ElassandraCrud<String[], String> crud(String table) {
+        ElassandraCrud<String[], String> crud = new ElassandraCrud<String[], String>(table,
+                new String[] { "id", "name", "closed_at", "revoked_at" },
+                new String[] { "text", "text", "text", "text" }, 1, new boolean[0]) {
+            @Override
+            public Object[] values(String[] t) {
+                return t;
+            }
+
+            @Override
+            public String[] fromRow(Row row) {
+                return row == null ? null : new String[] { row.getString("id"), row.getString("name"), row.getString("closed_at"), row.getString("revoked_at") };
+            }
+        };
+        ReflectionTestUtils.setField(crud, "session", session);
+        crud.init();
+        return crud;
+    }
+
+    /**
+     * @return tombstones scanned by the last read of the table
+     */
+    private static long tombstones(ElassandraCrud<String[], String> crud) throws Exception {
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE).getColumnFamilyStore(crud.tableName);
+        cfs.forceBlockingFlush();
+        crud.findById("a");
+        return cfs.metric.tombstoneScannedHistogram.cf.getSnapshot().getMax();
+    }
+}
@@ -0,0 +1,319 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.ratelimit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.RETURNS_MOCKS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+
+import io.gravitee.repository.elassandra.common.AbstractElassandraRepositoryConfiguration.ExecutionProfile;
+import io.gravitee.repository.elassandra.common.AbstractElassandraRepositoryConfiguration.ExecutionProfiles;
+import io.gravitee.repository.elassandra.common.AbstractElassandraRepositoryConfiguration.ExecutionProfiles.Operation;
+import io.gravitee.repository.elassandra.common.CompletedResultSetFuture;
+import io.gravitee.repository.elassandra.ratelimit.RateLimitRepositoryConfiguration.Mode;
+import io.gravitee.repository.elassandra.ratelimit.RateLimitRepositoryConfiguration.RateLimitConfig;
+import io.gravitee.repository.ratelimit.model.RateLimit;
+
+/**
+ * Check the rate limit hot path only chains asynchronous statements.
+ *
+ * @author vroyer
+ */
+public class ElassandraRateLimitRepositoryTest {
+
+    private Session session;
+    private RateLimitConfig rateLimitConfig;
+    private ElassandraRateLimitRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        session = mock(Session.class);
+        rateLimitConfig = new RateLimitConfig();
+        rateLimitConfig.mode = Mode.UPSERT;
+        rateLimitConfig.casMaxRetries = 4;
+
+        repository = new ElassandraRateLimitRepository();
+        ReflectionTestUtils.setField(repository, "session", session);
+        ReflectionTestUtils.setField(repository, "rateLimitConfig", rateLimitConfig);
+        for(String stmt : new String[] { "selectStmt", "selectLatestStmt", "insertStmtUsingTtl", "casSelectStmt", "casInsertStmt", "casIncrementStmt", "casResetStmt" })
+            ReflectionTestUtils.setField(repository, stmt, mock(PreparedStatement.class, RETURNS_MOCKS));
+    }
+
+    @Test
+    public void shouldCreateWithoutBlocking() {
+        when(session.executeAsync(any(Statement.class))).thenReturn(completed(resultSet(null, true)), completed(resultSet(null, true)));
+
+        RateLimit rateLimit = repository.incrementAndGet("key", 1, () -> rateLimit("key", 0, 1000)).blockingGet();
+
+        assertEquals("key", rateLimit.getKey());
+        verify(session, times(2)).executeAsync(any(Statement.class));
+        verifyNoBlockingCall();
+    }
+
+    @Test
+    public void shouldIncrementWithoutBlocking() {
+        long resetTime = System.currentTimeMillis() + 60000;
+        when(session.executeAsync(any(Statement.class))).thenReturn(completed(resultSet(row("key", 5, resetTime), true)), completed(resultSet(null, true)));
+
+        RateLimit rateLimit = repository.incrementAndGet("key", 2, () -> rateLimit("key", 0, 1000)).blockingGet();
+
+        assertEquals(7, rateLimit.getCounter());
+        assertEquals(resetTime, rateLimit.getResetTime());
+        verify(session, times(2)).executeAsync(any(Statement.class));
+        verifyNoBlockingCall();
+    }
+
+    @Test
+    public void shouldUpsertNewWindowWithWeight() {
+        when(session.executeAsync(any(Statement.class))).thenReturn(
+                completed(resultSet(null, true)), completed(resultSet(null, true)),
+                completed(resultSet(row("key", 5, System.currentTimeMillis() - 1000), true)), completed(resultSet(null, true)));
+
+        // missing row
+        assertEquals(3, repository.incrementAndGet("key", 3, () -> rateLimit("key", 0, 1000)).blockingGet().getCounter());
+        // row past its reset time but still within its TTL
+        RateLimit rateLimit = repository.incrementAndGet("key", 3, () -> rateLimit("key", 0, 1000)).blockingGet();
+        assertEquals(3, rateLimit.getCounter());
+        assertTrue(rateLimit.getResetTime() > System.currentTimeMillis());
+        verifyNoBlockingCall();
+    }
+
+    @Test
+    public void shouldRetryCompareAndSetWithoutBlocking() {
+        rateLimitConfig.mode = Mode.CAS;
+        long resetTime = System.currentTimeMillis() + 60000;
+        when(session.executeAsync(any(Statement.class))).thenReturn(
+                completed(resultSet(row("key", 5, resetTime), true)),
+                completed(resultSet(null, false)),
+                completed(resultSet(row("key", 6, resetTime), true)),
+                completed(resultSet(null, true)));
+
+        RateLimit rateLimit = repository.incrementAndGet("key", 1, () -> rateLimit("key", 0, 1000)).blockingGet();
+
+        assertEquals(7, rateLimit.getCounter());
+        verify(session, times(4)).executeAsync(any(Statement.class));
+        verifyNoBlockingCall();
+    }
+
+    @Test
+    public void shouldStartNewWindowWithWeight() {
+        rateLimitConfig.mode = Mode.CAS;
+        when(session.executeAsync(any(Statement.class))).thenReturn(completed(resultSet(null, true)), completed(resultSet(null, true)));
+
+        RateLimit rateLimit = repository.incrementAndGet("key", 3, () -> rateLimit("key", 0, 1000)).blockingGet();
+
+        assertEquals(3, rateLimit.getCounter());
+        verifyNoBlockingCall();
+    }
+
+    @Test
+    public void shouldIncrementBatchInOneRoundOfReadsAndWrites() {
+        when(session.getCluster()).thenReturn(mock(Cluster.class, RETURNS_DEEP_STUBS));
+        when(session.executeAsync(any(Statement.class))).thenReturn(
+                completed(resultSet(null, true)),
+                completed(resultSet(row("b", 5, System.currentTimeMillis() + 60000), true)),
+                completed(resultSet(null, true)));
+
+        List<RateLimit> rateLimits = repository.incrementAndGet(Arrays.asList(
+                new RateLimitIncrement("a", 1, () -> rateLimit("a", 0, 1000)),
+                new RateLimitIncrement("b", 1, () -> rateLimit("b", 0, 1000)),
+                new RateLimitIncrement("a", 1, () -> rateLimit("a", 0, 1000)))).blockingGet();
+
+        assertEquals(3, rateLimits.size());
+        assertEquals("a", rateLimits.get(0).getKey());
+        assertEquals(6, rateLimits.get(1).getCounter());
+        assertSame(rateLimits.get(0), rateLimits.get(2));
+        // 2 parallel reads, then the 2 inserts sharing the same replicas in one batch
+        verify(session, times(3)).executeAsync(any(Statement.class));
+        verifyNoBlockingCall();
+    }
+
+    @Test
+    public void shouldSumShardsOfHotKey() {
+        rateLimitConfig.shards = 1;
+        rateLimitConfig.shardingRules.put(Pattern.compile("hot.*"), 4);
+        long resetTime = System.currentTimeMillis() + 60000;
+        when(session.executeAsync(any(Statement.class))).thenReturn(
+                completed(resultSet(row("hot#0", 5, resetTime), true)),
+                completed(resultSet(null, true)),
+                completed(resultSet(row("hot#1", 2, resetTime), true)),
+                completed(resultSet(null, true)),
+                completed(resultSet(row("hot#3", 9, System.currentTimeMillis() - 1000), true)));
+
+        RateLimit rateLimit = repository.incrementAndGet("hot", 1, () -> rateLimit("hot", 0, 1000)).blockingGet();
+
+        // own shard 5+1, live shard 2, missing and expired shards ignored
+        assertEquals("hot", rateLimit.getKey());
+        assertEquals(8, rateLimit.getCounter());
+        assertEquals(1, rateLimitConfig.getShards("cold"));
+        // read and write of the own shard, reads of the 3 other shards
+        verify(session, times(5)).executeAsync(any(Statement.class));
+        verifyNoBlockingCall();
+    }
+
+    @Test
+    public void shouldCountWeightOnFirstHitOfShard() {
+        rateLimitConfig.shards = 2;
+        when(session.executeAsync(any(Statement.class))).thenReturn(
+                completed(resultSet(null, true)), completed(resultSet(null, true)), completed(resultSet(null, true)));
+
+        RateLimit rateLimit = repository.incrementAndGet("hot", 2, () -> rateLimit("hot", 0, 1000)).blockingGet();
+
+        assertEquals(2, rateLimit.getCounter());
+        verifyNoBlockingCall();
+    }
+
+    @Test
+    public void shouldIncrementWindowStartedByRacingGateway() {
+        rateLimitConfig.mode = Mode.TIME_WINDOW;
+        rateLimitConfig.timeWindowDefaultTtlSeconds = 3600;
+        for(String stmt : new String[] { "twSelectStmt", "twInsertStmt", "twInsertStmtUsingTtl", "twIncrementStmt", "twIncrementStmtUsingTtl" })
+            ReflectionTestUtils.setField(repository, stmt, mock(PreparedStatement.class, RETURNS_MOCKS));
+
+        // gateway A reads no window and starts it.
+        when(session.executeAsync(any(Statement.class))).thenReturn(completed(resultSet(null, true)), completed(resultSet(null, true)));
+        RateLimit started = repository.incrementAndGet("key", 1, () -> rateLimit("key", 0, 60000)).blockingGet();
+        assertEquals(1, started.getCounter());
+        assertEquals(0, started.getResetTime() % 60000);
+
+        // gateway B also read no window, its insert is not applied and returns the window of A, then increments it.
+        when(session.executeAsync(any(Statement.class))).thenReturn(
+                completed(resultSet(null, true)),
+                completed(resultSet(row("key", 1, started.getResetTime()), false)),
+                completed(resultSet(null, true)));
+        RateLimit rateLimit = repository.incrementAndGet("key", 1, () -> rateLimit("key", 0, 60000)).blockingGet();
+
+        assertEquals(2, rateLimit.getCounter());
+        assertEquals(started.getResetTime(), rateLimit.getResetTime());
+        verify(repository.twIncrementStmt).bind(2L, "key", new Date(started.getResetTime()), 1L);
+        verify(session, times(5)).executeAsync(any(Statement.class));
+        verifyNoBlockingCall();
+    }
+
+    @Test
+    public void shouldAlignWindowsOnTheirPeriod() {
+        // racing gateways starting a window a few milliseconds apart get the same reset time.
+        assertEquals(120000, ElassandraRateLimitRepository.alignedResetTime(60000 + 60000, 60000));
+        assertEquals(120000, ElassandraRateLimitRepository.alignedResetTime(60007 + 60000, 60007));
+        assertEquals(180000, ElassandraRateLimitRepository.alignedResetTime(120000 + 60000, 120000));
+        // sub-second periods are aligned on the second.
+        assertEquals(2000, ElassandraRateLimitRepository.alignedResetTime(1500 + 100, 1500));
+    }
+
+    @Test
+    public void shouldNotShortenWindowFirstHitNearBoundary() {
+        // a first hit 1 ms before a boundary opens a window ending at the next one, not 1 ms later.
+        assertEquals(180000, ElassandraRateLimitRepository.alignedResetTime(119999 + 60000, 119999));
+        assertEquals(7200000, ElassandraRateLimitRepository.alignedResetTime(3599999 + 3600000, 3599999));
+        for(long now = 60000; now < 120000; now += 997) {
+            long window = ElassandraRateLimitRepository.alignedResetTime(now + 60000, now) - now;
+            assertTrue("window=" + window, window >= 30000 && window <= 90000);
+        }
+    }
+
+    @Test
+    public void shouldKeepResetTimeOfPeriodsNotDividingADay() {
+        final long now = 1234567;
+        final long week = 7 * 24 * 3600 * 1000L, month = 30 * 24 * 3600 * 1000L;
+        assertEquals(now + week, ElassandraRateLimitRepository.alignedResetTime(now + week, now));
+        assertEquals(now + month, ElassandraRateLimitRepository.alignedResetTime(now + month, now));
+        assertEquals(now + 7000, ElassandraRateLimitRepository.alignedResetTime(now + 7000, now));
+    }
+
+    @Test
+    public void shouldApplyProfilesOfModeTable() {
+        rateLimitConfig.mode = Mode.CAS;
+        ExecutionProfile casRead = spy(new ExecutionProfile());
+        ExecutionProfiles executionProfiles = mock(ExecutionProfiles.class);
+        when(executionProfiles.get(ElassandraRateLimitRepository.CAS_TABLE_NAME)).thenReturn(Collections.singletonMap(Operation.READ, casRead));
+        ReflectionTestUtils.setField(repository, "executionProfiles", executionProfiles);
+        PreparedStatement statement = mock(PreparedStatement.class, RETURNS_MOCKS);
+        when(session.prepare(anyString())).thenReturn(statement);
+        repository.initStmt();
+
+        when(session.executeAsync(any(Statement.class))).thenReturn(completed(resultSet(null, true)), completed(resultSet(null, true)));
+        repository.incrementAndGet("key", 1, () -> rateLimit("key", 0, 1000)).blockingGet();
+
+        // the ratelimits_cas read profile applies to the prepared and the bound select only
+        verify(casRead).apply(statement);
+        verify(casRead).apply(any(Statement.class));
+        verify(executionProfiles, never()).get(repository.tableName);
+    }
+
+    private void verifyNoBlockingCall() {
+        verify(session, never()).execute(any(Statement.class));
+        verify(session, never()).execute(anyString());
+    }
+
+    private static RateLimit rateLimit(String key, long counter, long period) {
+        RateLimit rateLimit = new RateLimit(key);
+        rateLimit.setCounter(counter);
+        rateLimit.setResetTime(System.currentTimeMillis() + period);
+        rateLimit.setLimit(10);
+        rateLimit.setSubscription("subscription");
+        return rateLimit;
+    }
+
+    private static Row row(String key, long counter, long resetTime) {
+        Row row = mock(Row.class);
+        when(row.getString("id")).thenReturn(key);
+        when(row.getLong("counter")).thenReturn(counter);
+        when(row.getTimestamp("reset_time")).thenReturn(new Date(resetTime));
+        when(row.getLong("rate_limit")).thenReturn(10L);
+        when(row.getString("subscription")).thenReturn("subscription");
+        return row;
+    }
+
+    private static ResultSet resultSet(Row row, boolean applied) {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.one()).thenReturn(row);
+        when(resultSet.wasApplied()).thenReturn(applied);
+        return resultSet;
+    }
+
+    private static ResultSetFuture completed(ResultSet resultSet) {
+        return new CompletedResultSetFuture(resultSet);
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.ratelimit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+
+import io.gravitee.repository.ratelimit.model.RateLimit;
+
+/**
+ * @author vroyer
+ */
+public class RateLimitAccumulatorTest {
+
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicInteger writes = new AtomicInteger();
+    private final long resetTime = System.currentTimeMillis() + 60000;
+
+    private final RateLimitAccumulator.Store store = (key, weight, supplier) -> {
+        writes.incrementAndGet();
+        RateLimit rateLimit = new RateLimit(key);
+        rateLimit.setCounter(stored.addAndGet(weight));
+        rateLimit.setResetTime(resetTime);
+        rateLimit.setLimit(10000);
+        return Futures.immediateFuture(rateLimit);
+    };
+
+    @Test
+    public void shouldAggregateHotKeyWrites() throws Exception {
+        try (RateLimitAccumulator accumulator = new RateLimitAccumulator(store, 60000, 100)) {
+            long counter = 0;
+            for(int i = 0; i < 1000; i++)
+                counter = accumulator.incrementAndGet("key", 1, () -> new RateLimit("key")).get().getCounter();
+
+            assertEquals(1000, counter);
+            assertTrue("writes=" + writes.get(), writes.get() <= 11);
+        }
+        assertEquals(1000, stored.get());
+    }
+
+    @Test
+    public void shouldCountFlushedDeltaOnceOnFlushingCall() throws Exception {
+        try (RateLimitAccumulator accumulator = new RateLimitAccumulator(store, 60000, 3)) {
+            // the first increment syncs, every third one reaches the threshold and flushes synchronously
+            for(int i = 1; i <= 10; i++)
+                assertEquals(i, accumulator.incrementAndGet("key", 1, () -> new RateLimit("key")).get().getCounter());
+            assertEquals(4, writes.get());
+        }
+        assertEquals(10, stored.get());
+    }
+
+    @Test
+    public void shouldFlushOnClose() throws Exception {
+        RateLimitAccumulator accumulator = new RateLimitAccumulator(store, 60000, 100);
+        for(int i = 0; i < 10; i++)
+            accumulator.incrementAndGet("key", 2, () -> new RateLimit("key")).get();
+        assertEquals(2, stored.get());
+
+        accumulator.close();
+        assertEquals(20, stored.get());
+        assertEquals(2, writes.get());
+    }
+
+    @Test
+    public void shouldNotCarryExpiredDeltaToNextWindow() throws Exception {
+        final AtomicLong windowEnd = new AtomicLong(System.currentTimeMillis() + 100);
+        final List<Long> weights = new ArrayList<>();
+        RateLimitAccumulator.Store windowStore = (key, weight, supplier) -> {
+            weights.add(weight);
+            RateLimit rateLimit = new RateLimit(key);
+            rateLimit.setCounter(weight);
+            rateLimit.setResetTime(windowEnd.get());
+            return Futures.immediateFuture(rateLimit);
+        };
+        try (RateLimitAccumulator accumulator = new RateLimitAccumulator(windowStore, 60000, 100)) {
+            for(int i = 0; i < 5; i++)
+                accumulator.incrementAndGet("key", 1, () -> new RateLimit("key")).get();
+            Thread.sleep(150);
+            windowEnd.set(System.currentTimeMillis() + 60000);
+
+            assertEquals(1, accumulator.incrementAndGet("key", 1, () -> new RateLimit("key")).get().getCounter());
+            accumulator.flushAll();
+        }
+        assertEquals(Arrays.asList(1L, 1L), weights);
+    }
+
+    @Test
+    public void shouldCountInflightFlush() throws Exception {
+        final List<SettableFuture<RateLimit>> flushes = new ArrayList<>();
+        RateLimitAccumulator.Store slowStore = (key, weight, supplier) -> {
+            RateLimit rateLimit = new RateLimit(key);
+            rateLimit.setCounter(stored.addAndGet(weight));
+            rateLimit.setResetTime(resetTime);
+            if (weight == 1)
+                return Futures.immediateFuture(rateLimit);
+            SettableFuture<RateLimit> flush = SettableFuture.create();
+            flushes.add(flush);
+            return flush;
+        };
+        try (RateLimitAccumulator accumulator = new RateLimitAccumulator(slowStore, 60000, 3)) {
+            long counter = 0;
+            for(int i = 0; i < 5; i++)
+                counter = accumulator.incrementAndGet("key", 1, () -> new RateLimit("key")).get().getCounter();
+
+            // the first increment synced, the next 3 are in flight, the last one is pending
+            assertEquals(1, flushes.size());
+            assertEquals(5, counter);
+        }
+    }
+}
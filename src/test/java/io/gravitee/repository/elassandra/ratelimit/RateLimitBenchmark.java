@@ -0,0 +1,227 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.ratelimit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
+import org.mockito.MockSettings;
+import org.mockito.stubbing.Answer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+
+import io.gravitee.repository.elassandra.common.CompletedResultSetFuture;
+import io.gravitee.repository.elassandra.ratelimit.RateLimitRepositoryConfiguration.Mode;
+import io.gravitee.repository.elassandra.ratelimit.RateLimitRepositoryConfiguration.RateLimitConfig;
+import io.gravitee.repository.ratelimit.model.RateLimit;
+
+/**
+ * JMH benchmarks of the rate limit hot path, run with <code>mvn -Pjmh -DskipTests test</code>.
+ *
+ * The <b>elassandra</b> backend drives an embedded Elassandra through elassandra-unit and measures the whole
+ * round trip. The <b>standin</b> backend answers every statement with the same completed result, so it only
+ * measures the client-side cost of the hot path (statement binding, future chaining, accumulator, sharding).
+ * Throughput and sample time (latency percentiles) are reported for each storage mode.
+ *
+ * @author vroyer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ org.openjdk.jmh.annotations.Mode.Throughput, org.openjdk.jmh.annotations.Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Dcassandra.custom_query_handler_class=org.elassandra.index.ElasticQueryHandler")
+@Threads(8)
+public class RateLimitBenchmark {
+
+    private static final String KEYSPACE = "ratelimit_bench";
+    private static final int KEYS = 10000;
+    private static final long PERIOD = 60000;
+
+    @Param({ "standin", "elassandra" })
+    public String backend;
+
+    @Param({ "upsert", "cas", "time_window" })
+    public String mode;
+
+    @Param({ "false" })
+    public boolean writeBehind;
+
+    private Cluster cluster;
+    private ElassandraRateLimitRepository repository;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final Session session;
+        if ("elassandra".equals(backend)) {
+            EmbeddedCassandraServerHelper.startEmbeddedCassandra(100000L);
+            cluster = Cluster.builder().addContactPoints("localhost").withPort(9142).build();
+            try (Session s = cluster.connect()) {
+                s.execute(String.format(Locale.ROOT, "CREATE KEYSPACE IF NOT EXISTS %s WITH replication = { 'class': 'NetworkTopologyStrategy', 'datacenter1': '1' }", KEYSPACE));
+            }
+            session = cluster.connect(KEYSPACE);
+        } else {
+            session = standInSession();
+        }
+
+        RateLimitConfig rateLimitConfig = new RateLimitConfig();
+        rateLimitConfig.mode = Mode.valueOf(mode.toUpperCase(Locale.ROOT));
+        rateLimitConfig.casMaxRetries = 64;
+        rateLimitConfig.writeBehind = writeBehind;
+        rateLimitConfig.writeBehindFlushIntervalMillis = 1000;
+        rateLimitConfig.writeBehindFlushThreshold = 100;
+        rateLimitConfig.timeWindowDefaultTtlSeconds = 3600;
+        rateLimitConfig.timeWindowCompactionWindowMinutes = 5;
+        rateLimitConfig.timeWindowGcGraceSeconds = 3600;
+        rateLimitConfig.shards = 1;
+
+        repository = new ElassandraRateLimitRepository();
+        ReflectionTestUtils.setField(repository, "session", session);
+        ReflectionTestUtils.setField(repository, "rateLimitConfig", rateLimitConfig);
+        repository.init();
+        repository.initStmt();
+
+        keys = new String[KEYS];
+        for(int i = 0; i < KEYS; i++)
+            keys[i] = "key" + i;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repository.close();
+        if (cluster != null)
+            cluster.close();
+    }
+
+    /**
+     * All threads increment the same key, the worst case for lightweight transactions.
+     */
+    @Benchmark
+    public RateLimit singleKey() {
+        return incrementAndGet(keys[0], 1);
+    }
+
+    /**
+     * Threads increment keys spread over the whole key space.
+     */
+    @Benchmark
+    public RateLimit manyKeys() {
+        return incrementAndGet(keys[ThreadLocalRandom.current().nextInt(KEYS)], 1);
+    }
+
+    /**
+     * Threads increment a few hundred keys with weights from 1 to 10, as with a cost-based rate limit.
+     */
+    @Benchmark
+    public RateLimit mixedWeights() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return incrementAndGet(keys[random.nextInt(100)], 1 + random.nextInt(10));
+    }
+
+    private RateLimit incrementAndGet(String key, long weight) {
+        return repository.incrementAndGet(key, weight, supplier(key)).blockingGet();
+    }
+
+    private static Supplier<RateLimit> supplier(String key) {
+        return () -> {
+            RateLimit rateLimit = new RateLimit(key);
+            rateLimit.setResetTime(System.currentTimeMillis() + PERIOD);
+            rateLimit.setLimit(Long.MAX_VALUE);
+            rateLimit.setSubscription("subscription");
+            return rateLimit;
+        };
+    }
+
+    /**
+     * A session answering every statement with a completed result set holding one live row and applied=true.
+     */
+    private static Session standInSession() {
+        final Row row = mock(Row.class, stubOnly(invocation -> {
+            switch (invocation.getMethod().getName()) {
+                case "getString":
+                    return "id".equals(invocation.getArgument(0)) ? "key0" : "subscription";
+                case "getLong":
+                    return 1L;
+                case "getTimestamp":
+                    return new Date(System.currentTimeMillis() + PERIOD);
+                default:
+                    return null;
+            }
+        }));
+        final ResultSet resultSet = mock(ResultSet.class, stubOnly(invocation -> {
+            switch (invocation.getMethod().getName()) {
+                case "one":
+                    return row;
+                case "wasApplied":
+                    return true;
+                default:
+                    return null;
+            }
+        }));
+        final ResultSetFuture future = new CompletedResultSetFuture(resultSet);
+        final BoundStatement boundStatement = mock(BoundStatement.class, withSettings().stubOnly());
+        final PreparedStatement preparedStatement = mock(PreparedStatement.class,
+                stubOnly(invocation -> "bind".equals(invocation.getMethod().getName()) ? boundStatement : null));
+        return mock(Session.class, stubOnly(invocation -> {
+            switch (invocation.getMethod().getName()) {
+                case "executeAsync":
+                    return future;
+                case "execute":
+                    return resultSet;
+                case "prepare":
+                    return preparedStatement;
+                default:
+                    return null;
+            }
+        }));
+    }
+
+    /**
+     * Stand-ins do not record invocations, which would otherwise grow without bound over a benchmark run.
+     */
+    private static MockSettings stubOnly(Answer<Object> answer) {
+        return withSettings().stubOnly().defaultAnswer(answer);
+    }
+}
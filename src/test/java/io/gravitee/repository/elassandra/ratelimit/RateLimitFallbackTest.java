@@ -0,0 +1,112 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.ratelimit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+
+import io.gravitee.repository.exceptions.TechnicalException;
+import io.gravitee.repository.ratelimit.model.RateLimit;
+
+/**
+ * @author vroyer
+ */
+public class RateLimitFallbackTest {
+
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicBoolean available = new AtomicBoolean();
+    private final long resetTime = System.currentTimeMillis() + 60000;
+    private final Supplier<RateLimit> supplier = () -> {
+        RateLimit rateLimit = new RateLimit("key");
+        rateLimit.setResetTime(resetTime);
+        rateLimit.setLimit(10000);
+        return rateLimit;
+    };
+
+    private final RateLimitAccumulator.Store store = (key, weight, supplier) -> {
+        calls.incrementAndGet();
+        if (!available.get())
+            return Futures.immediateFailedFuture(new TechnicalException("unavailable"));
+        RateLimit rateLimit = supplier.get();
+        rateLimit.setCounter(stored.addAndGet(weight));
+        return Futures.immediateFuture(rateLimit);
+    };
+
+    @Test
+    public void shouldAnswerLocallyOverLatencyBudget() throws Exception {
+        RateLimitAccumulator.Store slowStore = (key, weight, supplier) -> SettableFuture.create();
+        try (RateLimitFallback fallback = new RateLimitFallback(slowStore, 20, 100, 60000)) {
+            long start = System.nanoTime();
+            assertEquals(1, fallback.incrementAndGet("key", 1, supplier).get(1, TimeUnit.SECONDS).getCounter());
+            assertEquals(3, fallback.incrementAndGet("key", 2, supplier).get(1, TimeUnit.SECONDS).getCounter());
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    @Test
+    public void shouldOpenCircuitWhenEveryCallSucceedsLate() throws Exception {
+        List<SettableFuture<RateLimit>> futures = new ArrayList<>();
+        RateLimitAccumulator.Store lateStore = (key, weight, supplier) -> {
+            SettableFuture<RateLimit> future = SettableFuture.create();
+            futures.add(future);
+            return future;
+        };
+        try (RateLimitFallback fallback = new RateLimitFallback(lateStore, 20, 2, 60000)) {
+            for(int i = 1; i <= 2; i++) {
+                assertEquals(i, fallback.incrementAndGet("key", 1, supplier).get(1, TimeUnit.SECONDS).getCounter());
+                RateLimit late = supplier.get();
+                late.setCounter(i);
+                futures.get(i - 1).set(late);
+            }
+            // late successes neither reset the failures nor the local counter
+            assertTrue(fallback.isOpen());
+            assertEquals(3, fallback.incrementAndGet("key", 1, supplier).get().getCounter());
+            assertEquals(2, futures.size());
+        }
+    }
+
+    @Test
+    public void shouldOpenCircuitAndReconcile() throws Exception {
+        try (RateLimitFallback fallback = new RateLimitFallback(store, 1000, 2, 100)) {
+            for(int i = 1; i <= 4; i++)
+                assertEquals(i, fallback.incrementAndGet("key", 1, supplier).get().getCounter());
+            // the circuit opened after 2 failures
+            assertEquals(2, calls.get());
+            assertTrue(fallback.isOpen());
+
+            available.set(true);
+            Thread.sleep(150);
+            fallback.reconcileAll();
+            assertEquals(4, stored.get());
+            assertEquals(5, fallback.incrementAndGet("key", 1, supplier).get().getCounter());
+        }
+    }
+}
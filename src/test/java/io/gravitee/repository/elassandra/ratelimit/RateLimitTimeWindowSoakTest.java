@@ -0,0 +1,170 @@
+/**
+ * This file is part of Gravitee.io APIM - API Management - Repository for Elassandra.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gravitee.io APIM - API Management - Repository for Elassandra is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Gravitee.io APIM - API Management - Repository for Elassandra.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.gravitee.repository.elassandra.ratelimit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Keyspace;
+import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+
+import io.gravitee.repository.elassandra.ratelimit.RateLimitRepositoryConfiguration.Mode;
+import io.gravitee.repository.elassandra.ratelimit.RateLimitRepositoryConfiguration.RateLimitConfig;
+import io.gravitee.repository.ratelimit.model.RateLimit;
+
+/**
+ * Soak test measuring the current window read latency, the tombstones scanned by reads and the number of live
+ * SSTables over many expired windows, for the time window layout and the legacy upsert layout. The run lasts three
+ * times the table default TTL, so that expired windows are purged during the run, and the time window layout must
+ * stay within the latency, tombstone and SSTable bounds. Disabled by default, run with -Dsoak=true.
+ *
+ * @author vroyer
+ */
+public class RateLimitTimeWindowSoakTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimitTimeWindowSoakTest.class);
+
+    private static final String KEYSPACE = "ratelimit_soak";
+    private static final int WINDOWS = Integer.getInteger("soak.windows", 30);
+    private static final int KEYS = Integer.getInteger("soak.keys", 50);
+    private static final int HITS = Integer.getInteger("soak.hits", 10);
+    private static final long WINDOW_MILLIS = Long.getLong("soak.windowMillis", 5000);
+    // the run lasts three times the default TTL.
+    private static final int DEFAULT_TTL_SECONDS = (int) Math.max(1, WINDOWS * WINDOW_MILLIS / 1000 / 3);
+    private static final int GC_GRACE_SECONDS = 10;
+    private static final long MAX_P99_MICROS = Long.getLong("soak.maxP99Micros", 50000);
+    private static final long MAX_TOMBSTONES_PER_READ = 1;
+
+    private static Cluster cluster;
+    private static Session session;
+
+    @BeforeClass
+    public static void startElassandra() throws Exception {
+        Assume.assumeTrue("soak tests disabled, use -Dsoak=true", Boolean.getBoolean("soak"));
+        EmbeddedCassandraServerHelper.startEmbeddedCassandra(100000L);
+        cluster = Cluster.builder().addContactPoints("localhost").withPort(9142).build();
+        try (Session s = cluster.connect()) {
+            s.execute(String.format(Locale.ROOT, "CREATE KEYSPACE IF NOT EXISTS %s WITH replication = { 'class': 'NetworkTopologyStrategy', 'datacenter1': '1' }", KEYSPACE));
+        }
+        session = cluster.connect(KEYSPACE);
+    }
+
+    @AfterClass
+    public static void stopElassandra() {
+        if (cluster != null)
+            cluster.close();
+    }
+
+    @Test
+    public void soakTimeWindow() throws Exception {
+        ElassandraRateLimitRepository repository = repository(Mode.TIME_WINDOW);
+        soak(repository, repository.twSelectStmt, ElassandraRateLimitRepository.TIME_WINDOW_TABLE_NAME, true);
+    }
+
+    @Test
+    public void soakUpsert() throws Exception {
+        ElassandraRateLimitRepository repository = repository(Mode.UPSERT);
+        soak(repository, repository.selectLatestStmt, repository.tableName, false);
+    }
+
+    private ElassandraRateLimitRepository repository(Mode mode) throws Exception {
+        RateLimitConfig rateLimitConfig = new RateLimitConfig();
+        rateLimitConfig.mode = mode;
+        rateLimitConfig.casMaxRetries = 16;
+        rateLimitConfig.timeWindowDefaultTtlSeconds = DEFAULT_TTL_SECONDS;
+        rateLimitConfig.timeWindowCompactionWindowMinutes = 1;
+        rateLimitConfig.timeWindowGcGraceSeconds = GC_GRACE_SECONDS;
+
+        ElassandraRateLimitRepository repository = new ElassandraRateLimitRepository();
+        ReflectionTestUtils.setField(repository, "session", session);
+        ReflectionTestUtils.setField(repository, "rateLimitConfig", rateLimitConfig);
+        repository.init();
+        repository.initStmt();
+        return repository;
+    }
+
+    private void soak(ElassandraRateLimitRepository repository, PreparedStatement selectCurrentStmt, String table, boolean timeWindow) throws Exception {
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE).getColumnFamilyStore(table);
+        long maxP99 = 0;
+        for(int window = 0; window < WINDOWS; window++) {
+            // start on a window boundary, as the time window mode aligns windows on their period.
+            long now = System.currentTimeMillis();
+            Thread.sleep(WINDOW_MILLIS - now % WINDOW_MILLIS);
+            now = System.currentTimeMillis();
+            final long resetTime = now - now % WINDOW_MILLIS + WINDOW_MILLIS;
+            for(int key = 0; key < KEYS; key++) {
+                final String id = "key" + key;
+                RateLimit rateLimit = null;
+                for(int hit = 0; hit < HITS; hit++)
+                    rateLimit = repository.incrementAndGet(id, 1, () -> rateLimit(id, resetTime)).blockingGet();
+                if (timeWindow)
+                    assertEquals(HITS, rateLimit.getCounter());
+            }
+            cfs.forceBlockingFlush();
+
+            List<Long> latencies = new ArrayList<>(KEYS);
+            for(int key = 0; key < KEYS; key++) {
+                long start = System.nanoTime();
+                session.execute(selectCurrentStmt.bind("key" + key)).one();
+                latencies.add(System.nanoTime() - start);
+            }
+            Collections.sort(latencies);
+            long p99 = latencies.get(latencies.size() * 99 / 100) / 1000;
+            if (window > 0)
+                maxP99 = Math.max(maxP99, p99);
+            LOGGER.info("table={} window={} read p50={}us p99={}us max tombstones/read={} live sstables={}", table, window,
+                    latencies.get(latencies.size() / 2) / 1000, p99, maxTombstonesPerRead(cfs), cfs.getLiveSSTables().size());
+        }
+
+        if (timeWindow) {
+            assertTrue("read p99=" + maxP99 + "us", maxP99 <= MAX_P99_MICROS);
+            assertTrue("tombstones/read=" + maxTombstonesPerRead(cfs), maxTombstonesPerRead(cfs) <= MAX_TOMBSTONES_PER_READ);
+            // windows older than the TTL and the gc grace are dropped with their SSTables.
+            long liveWindows = (DEFAULT_TTL_SECONDS + GC_GRACE_SECONDS) * 1000L / WINDOW_MILLIS + 1;
+            assertTrue("live sstables=" + cfs.getLiveSSTables().size(), cfs.getLiveSSTables().size() <= liveWindows);
+        }
+    }
+
+    private static long maxTombstonesPerRead(ColumnFamilyStore cfs) {
+        return cfs.metric.tombstoneScannedHistogram.cf.getSnapshot().getMax();
+    }
+
+    private static RateLimit rateLimit(String key, long resetTime) {
+        RateLimit rateLimit = new RateLimit(key);
+        rateLimit.setResetTime(resetTime);
+        rateLimit.setLimit(Long.MAX_VALUE);
+        rateLimit.setSubscription("subscription");
+        return rateLimit;
+    }
+}